@@ -0,0 +1,30 @@
+-- Rewrites buildings and zonage in random order, the worst case of an
+-- insertion-order layout, as the baseline of the spatial layout benchmark.
+-- The data itself is unchanged, so the data_version triggers stay quiet.
+BEGIN;
+
+ALTER TABLE buildings DISABLE TRIGGER USER;
+CREATE TEMP TABLE shuffled_buildings ON COMMIT DROP AS
+SELECT id, address, neighborhood, year_built, floors, building_type, geom, created_at, updated_at
+FROM buildings ORDER BY random();
+DELETE FROM buildings;
+INSERT INTO buildings (id, address, neighborhood, year_built, floors, building_type, geom, created_at, updated_at)
+SELECT * FROM shuffled_buildings;
+ALTER TABLE buildings ENABLE TRIGGER USER;
+
+ALTER TABLE zonage DISABLE TRIGGER USER;
+CREATE TEMP TABLE shuffled_zonage ON COMMIT DROP AS
+SELECT id, zone_code, arrondissement, district, secteur, classe1, classe2, classe3, classe4, classe5, classe6,
+       etage_min, etage_max, densite_min, densite_max, taux_min, taux_max, note, info, geom
+FROM zonage ORDER BY random();
+DELETE FROM zonage;
+INSERT INTO zonage (id, zone_code, arrondissement, district, secteur, classe1, classe2, classe3, classe4, classe5, classe6,
+                    etage_min, etage_max, densite_min, densite_max, taux_min, taux_max, note, info, geom)
+SELECT * FROM shuffled_zonage;
+ALTER TABLE zonage ENABLE TRIGGER USER;
+
+COMMIT;
+
+-- compacts the table in its new order
+VACUUM FULL ANALYZE buildings;
+VACUUM FULL ANALYZE zonage;
@@ -0,0 +1,47 @@
+-- Buffers touched per bbox query on buildings and zonage, over 200 map viewports
+-- (about zoom 15) spread over the extent of the data. Run with -v label=<name>.
+-- Shared hit + read blocks is what the physical layout changes; on a cold cache
+-- every one of them is a read.
+
+CREATE FUNCTION pg_temp.buffers(p_sql TEXT, OUT blocks BIGINT, OUT read_blocks BIGINT, OUT row_count BIGINT) AS $$
+DECLARE
+    v_plan JSONB;
+BEGIN
+    EXECUTE 'EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) ' || p_sql INTO v_plan;
+    blocks := (v_plan -> 0 -> 'Plan' ->> 'Shared Hit Blocks')::BIGINT + (v_plan -> 0 -> 'Plan' ->> 'Shared Read Blocks')::BIGINT;
+    read_blocks := (v_plan -> 0 -> 'Plan' ->> 'Shared Read Blocks')::BIGINT;
+    row_count := (v_plan -> 0 -> 'Plan' ->> 'Actual Rows')::BIGINT;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT setseed(0.42);
+
+CREATE TEMP TABLE viewports AS
+SELECT v.n,
+       e.min_lng + random() * greatest(e.max_lng - e.min_lng - 0.02, 0) AS min_lng,
+       e.min_lat + random() * greatest(e.max_lat - e.min_lat - 0.015, 0) AS min_lat
+FROM (SELECT ST_XMin(x) AS min_lng, ST_YMin(x) AS min_lat, ST_XMax(x) AS max_lng, ST_YMax(x) AS max_lat
+      FROM (SELECT ST_Extent(geom) AS x FROM buildings) extent) e,
+     generate_series(1, 200) AS v(n);
+
+WITH measured AS (
+    SELECT 'buildings' AS table_name, m.*
+    FROM viewports v,
+         pg_temp.buffers(format('SELECT id, geom FROM buildings WHERE ST_Intersects(geom, ST_MakeEnvelope(%s, %s, %s, %s, 4326))',
+                                v.min_lng, v.min_lat, v.min_lng + 0.02, v.min_lat + 0.015)) m
+    UNION ALL
+    SELECT 'zonage', m.*
+    FROM viewports v,
+         pg_temp.buffers(format('SELECT id, geom FROM zonage WHERE ST_Intersects(geom, ST_MakeEnvelope(%s, %s, %s, %s, 4326))',
+                                v.min_lng, v.min_lat, v.min_lng + 0.02, v.min_lat + 0.015)) m
+)
+SELECT :'label' AS layout,
+       table_name,
+       round(avg(row_count), 1) AS avg_rows,
+       round(avg(blocks), 1) AS avg_buffers,
+       percentile_disc(0.5) WITHIN GROUP (ORDER BY blocks) AS p50_buffers,
+       percentile_disc(0.95) WITHIN GROUP (ORDER BY blocks) AS p95_buffers,
+       round(avg(read_blocks), 1) AS avg_reads
+FROM measured
+GROUP BY table_name
+ORDER BY table_name;
@@ -0,0 +1,14 @@
+#!/bin/bash
+# Lets the replica container stream WAL from the primary. Runs on first start of
+# a fresh volume; for an existing one:
+#   docker exec montreal-postgis bash /db/replication/primary-init.sh
+set -euo pipefail
+
+RULE="host replication all all scram-sha-256"
+HBA="$PGDATA/pg_hba.conf"
+
+if ! grep -qxF "$RULE" "$HBA"; then
+  echo "$RULE" >> "$HBA"
+fi
+
+psql -v ON_ERROR_STOP=1 -U "${POSTGRES_USER:-montreal}" -d "${POSTGRES_DB:-montreal}" -c "select pg_reload_conf()"
@@ -0,0 +1,13 @@
+#!/bin/bash
+# Clones the primary on first start, then runs as a read-only hot standby.
+set -euo pipefail
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+  until pg_isready -h "$PRIMARY_HOST" -U "$PRIMARY_USER" -q; do sleep 1; done
+  # -R writes standby.signal and primary_conninfo, so postgres starts as a standby
+  pg_basebackup -h "$PRIMARY_HOST" -U "$PRIMARY_USER" -D "$PGDATA" -X stream -R -c fast
+  chmod 0700 "$PGDATA"
+fi
+
+# feedback keeps the primary from vacuuming rows that long replica reads still need
+exec postgres -c hot_standby=on -c hot_standby_feedback=on
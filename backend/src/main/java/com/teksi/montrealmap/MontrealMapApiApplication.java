@@ -2,8 +2,10 @@ package com.teksi.montrealmap;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class MontrealMapApiApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,6 @@
+package com.teksi.montrealmap.building.controller;
+
+import java.util.List;
+
+public record BuildingBatchRequest(List<String> ids) {
+}
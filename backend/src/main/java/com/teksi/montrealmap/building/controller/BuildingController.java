@@ -2,26 +2,59 @@ package com.teksi.montrealmap.building.controller;
 
 import com.teksi.montrealmap.building.dto.BuildingDetailsResponse;
 import com.teksi.montrealmap.building.service.BuildingService;
-import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.cache.ResponseCompressor;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.load.Bulkhead;
+import com.teksi.montrealmap.load.EndpointClass;
+import com.teksi.montrealmap.load.LevelOfDetail;
+import com.teksi.montrealmap.load.LoadSheddingProperties;
+import com.teksi.montrealmap.load.RequestCostEstimator;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/buildings")
+@Bulkhead(EndpointClass.GEOMETRY)
 public class BuildingController {
 
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final BuildingService buildingService;
+    private final ResponseCompressor responseCompressor;
+    private final RequestCostEstimator costEstimator;
+    private final LoadSheddingProperties loadSheddingProperties;
+    private final ProgressiveGeoJsonWriter progressiveWriter;
 
     @GetMapping("/{id}")
+    @Bulkhead(EndpointClass.LOOKUP)
     public BuildingDetailsResponse getById(@PathVariable String id) {
         return buildingService.getBuilding(id);
     }
 
+    @PostMapping("/batch")
+    @Bulkhead(EndpointClass.LOOKUP)
+    public List<BuildingDetailsResponse> getBatch(@RequestBody BuildingBatchRequest request) {
+        if (request.ids() == null || request.ids().isEmpty() || request.ids().size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + MAX_BATCH_SIZE + " ids are required");
+        }
+        return buildingService.getBuildings(request.ids());
+    }
+
     @GetMapping("/search")
-    public List<BuildingDetailsResponse> search(
+    public ResponseEntity<byte[]> search(
             @RequestParam double minLng,
             @RequestParam double minLat,
             @RequestParam double maxLng,
@@ -31,18 +64,26 @@ public class BuildingController {
             @RequestParam(required = false) Integer minYearBuilt,
             @RequestParam(required = false) Integer maxYearBuilt,
             @RequestParam(required = false) Integer minFloors,
-            @RequestParam(required = false) Integer maxFloors
+            @RequestParam(required = false) Integer maxFloors,
+            @RequestParam(required = false) String fields
     ) {
-        return buildingService.search(new BuildingSearchRequest(
+        BuildingSearchRequest req = new BuildingSearchRequest(
                 minLng, minLat, maxLng, maxLat,
                 neighborhood, buildingType,
                 minYearBuilt, maxYearBuilt,
-                minFloors, maxFloors
-        ));
+                minFloors, maxFloors,
+                fields(fields)
+        );
+        // a plain list has no coarser level to fall back to
+        if (costEstimator.exceeds(req, loadSheddingProperties.maxSearchResults())) {
+            throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE,
+                    "Too many buildings in this area; narrow the bbox or use /search/geojson");
+        }
+        return buildingService.search(req).toResponseEntity();
     }
 
     @GetMapping("/search/geojson")
-    public GeoJson.FeatureCollection searchGeoJson(
+    public ResponseEntity<byte[]> searchGeoJson(
             @RequestParam double minLng,
             @RequestParam double minLat,
             @RequestParam double maxLng,
@@ -52,18 +93,21 @@ public class BuildingController {
             @RequestParam(required = false) Integer minYearBuilt,
             @RequestParam(required = false) Integer maxYearBuilt,
             @RequestParam(required = false) Integer minFloors,
-            @RequestParam(required = false) Integer maxFloors
+            @RequestParam(required = false) Integer maxFloors,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return buildingService.searchGeoJson(new BuildingSearchRequest(
+        return geometry(new BuildingSearchRequest(
                 minLng, minLat, maxLng, maxLat,
                 neighborhood, buildingType,
                 minYearBuilt, maxYearBuilt,
-                minFloors, maxFloors
-        ));
+                minFloors, maxFloors,
+                fields(fields)
+        ), LevelOfDetail.CENTROIDS, buildingService::searchGeoJson, acceptEncoding);
     }
 
     @GetMapping("/search/geojson/full")
-    public GeoJson.FeatureCollection geoJsonSearchFull(
+    public ResponseEntity<byte[]> geoJsonSearchFull(
             @RequestParam double minLng,
             @RequestParam double minLat,
             @RequestParam double maxLng,
@@ -73,18 +117,21 @@ public class BuildingController {
             @RequestParam(required = false) Integer minYearBuilt,
             @RequestParam(required = false) Integer maxYearBuilt,
             @RequestParam(required = false) Integer minFloors,
-            @RequestParam(required = false) Integer maxFloors
+            @RequestParam(required = false) Integer maxFloors,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return buildingService.searchGeoJsonFull(new BuildingSearchRequest(
+        return geometry(new BuildingSearchRequest(
                 minLng, minLat, maxLng, maxLat,
                 neighborhood, buildingType,
                 minYearBuilt, maxYearBuilt,
-                minFloors, maxFloors
-        ));
+                minFloors, maxFloors,
+                fields(fields)
+        ), LevelOfDetail.POLYGONS, buildingService::searchGeoJsonFull, acceptEncoding);
     }
 
     @GetMapping("/search/geojsonsearch-polygons")
-    public GeoJson.FeatureCollection searchPolygons(
+    public ResponseEntity<byte[]> searchPolygons(
             @RequestParam double minLng,
             @RequestParam double minLat,
             @RequestParam double maxLng,
@@ -94,14 +141,70 @@ public class BuildingController {
             @RequestParam(required = false) Integer minYearBuilt,
             @RequestParam(required = false) Integer maxYearBuilt,
             @RequestParam(required = false) Integer minFloors,
-            @RequestParam(required = false) Integer maxFloors
+            @RequestParam(required = false) Integer maxFloors,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return buildingService.searchGeoJsonPolygons(new BuildingSearchRequest(
+        return geometry(new BuildingSearchRequest(
+                minLng, minLat, maxLng, maxLat,
+                neighborhood, buildingType,
+                minYearBuilt, maxYearBuilt,
+                minFloors, maxFloors,
+                fields(fields)
+        ), LevelOfDetail.POLYGONS, buildingService::searchGeoJsonPolygons, acceptEncoding);
+    }
+
+    // centroids first, then the polygons in chunks, over one chunked response
+    @GetMapping(value = "/search/geojsonsearch-polygons", params = "progressive=true")
+    public void searchPolygonsProgressive(
+            @RequestParam double minLng,
+            @RequestParam double minLat,
+            @RequestParam double maxLng,
+            @RequestParam double maxLat,
+            @RequestParam(required = false) String neighborhood,
+            @RequestParam(required = false) String buildingType,
+            @RequestParam(required = false) Integer minYearBuilt,
+            @RequestParam(required = false) Integer maxYearBuilt,
+            @RequestParam(required = false) Integer minFloors,
+            @RequestParam(required = false) Integer maxFloors,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        BuildingSearchRequest req = new BuildingSearchRequest(
                 minLng, minLat, maxLng, maxLat,
                 neighborhood, buildingType,
                 minYearBuilt, maxYearBuilt,
-                minFloors, maxFloors
-        ));
+                minFloors, maxFloors,
+                fields(fields)
+        );
+        LevelOfDetail level = costEstimator.buildingLevelOfDetail(req, LevelOfDetail.POLYGONS);
+        response.setHeader(LevelOfDetail.HEADER, level.headerValue());
+        progressiveWriter.write(buildingService.progressiveGeoJsonPolygons(req, level), acceptEncoding, response);
     }
 
+    private static Set<BuildingField> fields(String fields) {
+        try {
+            return BuildingField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // requests estimated to return too many buildings are answered at a coarser
+    // level of detail, reported in the X-Level-Of-Detail header
+    private ResponseEntity<byte[]> geometry(BuildingSearchRequest req, LevelOfDetail finest,
+                                            Function<BuildingSearchRequest, SerializedResponse> search,
+                                            String acceptEncoding) {
+        LevelOfDetail level = costEstimator.buildingLevelOfDetail(req, finest);
+        SerializedResponse body;
+        if (level == finest) {
+            body = search.apply(req);
+        } else if (level == LevelOfDetail.CENTROIDS) {
+            body = buildingService.searchGeoJsonCentroids(req);
+        } else {
+            body = buildingService.searchGeoJsonAggregates(req);
+        }
+        return level.tag(responseCompressor.respond(body, acceptEncoding));
+    }
 }
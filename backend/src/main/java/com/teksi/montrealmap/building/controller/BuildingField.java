@@ -0,0 +1,62 @@
+package com.teksi.montrealmap.building.controller;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The building properties a search can be limited to with {@code fields=}, and
+ * the columns they are read from. The id is always returned.
+ */
+public enum BuildingField {
+    ADDRESS("address", "b.address"),
+    NEIGHBORHOOD("neighborhood", "b.neighborhood"),
+    YEAR_BUILT("yearBuilt", "b.year_built"),
+    FLOORS("floors", "b.floors"),
+    BUILDING_TYPE("buildingType", "b.building_type"),
+    GEOMETRY("geometry", "ST_AsBinary(b.geom) as wkb");
+
+    private final String fieldName;
+    private final String column;
+
+    BuildingField(String fieldName, String column) {
+        this.fieldName = fieldName;
+        this.column = column;
+    }
+
+    public String fieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Select-list expression over {@code buildings b}.
+     */
+    public String column() {
+        return column;
+    }
+
+    /**
+     * Parses a comma-separated list of field names. Null or blank selects all
+     * fields, which is represented by null.
+     */
+    public static @Nullable Set<BuildingField> parse(@Nullable String fields) {
+        if (fields == null || fields.isBlank()) return null;
+
+        Set<BuildingField> parsed = EnumSet.noneOf(BuildingField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty() || trimmed.equals("id")) continue;
+            parsed.add(Arrays.stream(values())
+                    .filter(field -> field.fieldName.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown building field: " + trimmed)));
+        }
+        return parsed;
+    }
+
+    public static boolean isSelected(@Nullable Set<BuildingField> fields, BuildingField field) {
+        return fields == null || fields.contains(field);
+    }
+}
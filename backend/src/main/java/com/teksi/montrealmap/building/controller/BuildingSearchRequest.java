@@ -1,5 +1,16 @@
 package com.teksi.montrealmap.building.controller;
 
+import com.teksi.montrealmap.cache.SpatialKey;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A bbox search with optional attribute filters. {@code fields} limits the
+ * returned properties; null returns all of them.
+ */
 public record BuildingSearchRequest(double minLng,
                                     double minLat,
                                     double maxLng,
@@ -9,4 +20,51 @@ public record BuildingSearchRequest(double minLng,
                                     Integer minYearBuilt,
                                     Integer maxYearBuilt,
                                     Integer minFloors,
-                                    Integer maxFloors) {}
+                                    Integer maxFloors,
+                                    @Nullable Set<BuildingField> fields) implements SpatialKey {
+
+    public BuildingSearchRequest(double minLng, double minLat, double maxLng, double maxLat,
+                                 String neighborhood, String buildingType,
+                                 Integer minYearBuilt, Integer maxYearBuilt,
+                                 Integer minFloors, Integer maxFloors) {
+        this(minLng, minLat, maxLng, maxLat, neighborhood, buildingType,
+                minYearBuilt, maxYearBuilt, minFloors, maxFloors, null);
+    }
+
+    @Override
+    public Envelope bounds() {
+        return new Envelope(minLng, maxLng, minLat, maxLat);
+    }
+
+    /**
+     * This search with {@code field} selected as well; unchanged when all fields are.
+     */
+    public BuildingSearchRequest withField(BuildingField field) {
+        if (fields == null || fields.contains(field)) return this;
+        Set<BuildingField> selected = EnumSet.noneOf(BuildingField.class);
+        selected.addAll(fields);
+        selected.add(field);
+        return new BuildingSearchRequest(
+                minLng, minLat, maxLng, maxLat,
+                neighborhood, buildingType,
+                minYearBuilt, maxYearBuilt,
+                minFloors, maxFloors,
+                selected
+        );
+    }
+
+    /**
+     * Canonical form for equality-based keys (coalescing, caching): the same
+     * query must produce the same key.
+     */
+    public BuildingSearchRequest normalized() {
+        // adding 0.0 turns -0.0 into 0.0, which records otherwise treat as different
+        return new BuildingSearchRequest(
+                minLng + 0.0, minLat + 0.0, maxLng + 0.0, maxLat + 0.0,
+                neighborhood, buildingType,
+                minYearBuilt, maxYearBuilt,
+                minFloors, maxFloors,
+                fields
+        );
+    }
+}
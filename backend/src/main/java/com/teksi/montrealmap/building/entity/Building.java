@@ -5,17 +5,27 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 import org.locationtech.jts.geom.Geometry;
 
 
 @Entity
 @Table(name = "buildings")
+// the application never writes buildings; data changes evict the region (see SecondLevelCacheConfig).
+// Only lookups by id fill it; the bbox searches bypass it (see BuildingRepository)
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = Building.CACHE_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Building {
 
+    public static final String CACHE_REGION = "buildings";
+
     @Id
     @Column(length = 64)
     private String id;
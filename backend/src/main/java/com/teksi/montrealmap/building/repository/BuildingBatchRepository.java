@@ -0,0 +1,14 @@
+package com.teksi.montrealmap.building.repository;
+
+import com.teksi.montrealmap.building.entity.Building;
+
+import java.util.List;
+
+public interface BuildingBatchRepository {
+
+    /**
+     * The buildings with the given ids, in the order of {@code ids}; unknown ids
+     * are skipped.
+     */
+    List<Building> loadAll(List<String> ids);
+}
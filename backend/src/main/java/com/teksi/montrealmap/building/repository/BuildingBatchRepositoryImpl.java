@@ -0,0 +1,27 @@
+package com.teksi.montrealmap.building.repository;
+
+import com.teksi.montrealmap.building.entity.Building;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Multi-loads through Hibernate: buildings in the second-level cache are served
+ * from it and the others are fetched with a single {@code id = any(?)} query,
+ * however many ids are asked for.
+ */
+@RequiredArgsConstructor
+class BuildingBatchRepositoryImpl implements BuildingBatchRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public List<Building> loadAll(List<String> ids) {
+        return entityManager.unwrap(Session.class).findMultiple(Building.class, ids).stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
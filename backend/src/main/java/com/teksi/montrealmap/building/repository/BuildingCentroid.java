@@ -0,0 +1,24 @@
+package com.teksi.montrealmap.building.repository;
+
+/**
+ * A building reduced to a point on its surface, for responses too large to
+ * carry full geometry.
+ */
+public interface BuildingCentroid {
+
+    String getId();
+
+    String getAddress();
+
+    String getNeighborhood();
+
+    Integer getYearBuilt();
+
+    Integer getFloors();
+
+    String getBuildingType();
+
+    double getLng();
+
+    double getLat();
+}
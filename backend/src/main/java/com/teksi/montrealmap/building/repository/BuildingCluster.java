@@ -0,0 +1,17 @@
+package com.teksi.montrealmap.building.repository;
+
+/**
+ * The buildings of one grid cell: their count and mean position.
+ */
+public interface BuildingCluster {
+
+    long getCellX();
+
+    long getCellY();
+
+    long getCount();
+
+    double getLng();
+
+    double getLat();
+}
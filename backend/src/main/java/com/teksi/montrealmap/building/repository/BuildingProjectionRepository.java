@@ -0,0 +1,96 @@
+package com.teksi.montrealmap.building.repository;
+
+import com.teksi.montrealmap.building.controller.BuildingField;
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import com.teksi.montrealmap.building.entity.Building;
+import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Building bbox searches that select only the columns of the requested
+ * {@link BuildingField}s, so that e.g. an attribute-only search never reads
+ * geometries out of the database. Same filters as
+ * {@link BuildingRepository#searchInBbox}; the returned buildings are detached
+ * and leave the properties that were not selected null.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BuildingProjectionRepository {
+
+    private static final String FILTERS = """
+            from buildings b
+            where b.geom is not null
+              and ST_Within(b.geom, ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326))
+              and (cast(:neighborhood as text) is null or b.neighborhood = cast(:neighborhood as text))
+              and (cast(:buildingType as text) is null or b.building_type = cast(:buildingType as text))
+              and (cast(:minYearBuilt as integer) is null or b.year_built >= cast(:minYearBuilt as integer))
+              and (cast(:maxYearBuilt as integer) is null or b.year_built <= cast(:maxYearBuilt as integer))
+              and (cast(:minFloors as integer) is null or b.floors >= cast(:minFloors as integer))
+              and (cast(:maxFloors as integer) is null or b.floors <= cast(:maxFloors as integer))
+            """;
+
+    private static final String POLYGONS_ONLY = """
+              and ST_GeometryType(b.geom) in ('ST_Polygon', 'ST_MultiPolygon')
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<Building> searchInBbox(BuildingSearchRequest req, boolean polygonsOnly) {
+        Set<BuildingField> fields = req.fields() == null ? EnumSet.allOf(BuildingField.class) : req.fields();
+
+        StringBuilder sql = new StringBuilder("select b.id");
+        for (BuildingField field : fields) {
+            sql.append(", ").append(field.column());
+        }
+        sql.append('\n').append(FILTERS);
+        if (polygonsOnly) sql.append(POLYGONS_ONLY);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("minLng", req.minLng())
+                .addValue("minLat", req.minLat())
+                .addValue("maxLng", req.maxLng())
+                .addValue("maxLat", req.maxLat())
+                .addValue("neighborhood", req.neighborhood())
+                .addValue("buildingType", req.buildingType())
+                .addValue("minYearBuilt", req.minYearBuilt())
+                .addValue("maxYearBuilt", req.maxYearBuilt())
+                .addValue("minFloors", req.minFloors())
+                .addValue("maxFloors", req.maxFloors());
+
+        WKBReader wkbReader = new WKBReader();
+        return jdbcTemplate.query(sql.toString(), params, (rs, rowNum) -> building(rs, fields, wkbReader));
+    }
+
+    private static Building building(ResultSet rs, Set<BuildingField> fields, WKBReader wkbReader) throws SQLException {
+        Building building = new Building();
+        building.setId(rs.getString("id"));
+        for (BuildingField field : fields) {
+            switch (field) {
+                case ADDRESS -> building.setAddress(rs.getString("address"));
+                case NEIGHBORHOOD -> building.setNeighborhood(rs.getString("neighborhood"));
+                case YEAR_BUILT -> building.setYearBuilt((Integer) rs.getObject("year_built"));
+                case FLOORS -> building.setFloors((Integer) rs.getObject("floors"));
+                case BUILDING_TYPE -> building.setBuildingType(rs.getString("building_type"));
+                case GEOMETRY -> {
+                    byte[] wkb = rs.getBytes("wkb");
+                    try {
+                        building.setGeom(wkb == null ? null : wkbReader.read(wkb));
+                    } catch (ParseException e) {
+                        throw new IllegalStateException("Invalid geometry for building " + building.getId(), e);
+                    }
+                }
+            }
+        }
+        return building;
+    }
+}
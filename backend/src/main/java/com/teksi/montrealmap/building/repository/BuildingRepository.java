@@ -1,14 +1,20 @@
 package com.teksi.montrealmap.building.repository;
 
 import com.teksi.montrealmap.building.entity.Building;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 
-public interface BuildingRepository extends JpaRepository<Building, String> {
+// the entity searches read the second-level cache but never fill it: a large viewport
+// would otherwise push out the buildings looked up by id, which findById and loadAll cache
+public interface BuildingRepository extends JpaRepository<Building, String>, BuildingBatchRepository {
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
     @Query("""
             select b
             from Building b
@@ -36,6 +42,7 @@ public interface BuildingRepository extends JpaRepository<Building, String> {
             @Param("maxFloors") Integer maxFloors
     );
 
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
     @Query("""
             select b
             from Building b
@@ -64,4 +71,128 @@ public interface BuildingRepository extends JpaRepository<Building, String> {
             @Param("maxFloors") Integer maxFloors
     );
 
+    // unlike the searches, takes the buildings crossing the bbox edge too: tiles
+    // draw a building in every tile it touches, so tile seams have no gaps
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS"))
+    @Query("""
+            select b
+            from Building b
+            where function('ST_Intersects', b.geom,
+                  function('ST_MakeEnvelope', :minLng, :minLat, :maxLng, :maxLat, 4326)
+              ) = true
+            """)
+    List<Building> intersectingBbox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat
+    );
+
+    // coarse tiles count each building once, in the tile holding its bbox center
+    // (min edges in, max edges out), so no point is lost or repeated at a seam
+    @Query(value = """
+            select b.id as id, b.address as address, b.neighborhood as neighborhood,
+                   b.year_built as "yearBuilt", b.floors as floors, b.building_type as "buildingType",
+                   ST_X(p.point) as lng, ST_Y(p.point) as lat
+            from buildings b
+            cross join lateral (select ST_PointOnSurface(b.geom) as point) p
+            where b.geom && ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326)
+              and (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 >= :minLng and (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 < :maxLng
+              and (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 >= :minLat and (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 < :maxLat
+            """, nativeQuery = true)
+    List<BuildingCentroid> centroidsCenteredInBbox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat
+    );
+
+    @Query(value = """
+            select c.cell_x as "cellX", c.cell_y as "cellY", count(*) as count,
+                   avg(c.x) as lng, avg(c.y) as lat
+            from (
+                select (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 as x,
+                       (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 as y,
+                       cast(floor((ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 / :cellSize) as bigint) as cell_x,
+                       cast(floor((ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 / :cellSize) as bigint) as cell_y
+                from buildings b
+                where b.geom && ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326)
+                  and (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 >= :minLng and (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 < :maxLng
+                  and (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 >= :minLat and (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 < :maxLat
+            ) c
+            group by c.cell_x, c.cell_y
+            """, nativeQuery = true)
+    List<BuildingCluster> aggregateCenteredInBbox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat,
+            @Param("cellSize") double cellSize
+    );
+
+    // aliases of the native projections are quoted so PostgreSQL keeps their case
+    @Query(value = """
+            select b.id as id, b.address as address, b.neighborhood as neighborhood,
+                   b.year_built as "yearBuilt", b.floors as floors, b.building_type as "buildingType",
+                   ST_X(p.point) as lng, ST_Y(p.point) as lat
+            from buildings b
+            cross join lateral (select ST_PointOnSurface(b.geom) as point) p
+            where b.geom is not null
+              and ST_Within(b.geom, ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326))
+              and (cast(:neighborhood as text) is null or b.neighborhood = cast(:neighborhood as text))
+              and (cast(:buildingType as text) is null or b.building_type = cast(:buildingType as text))
+              and (cast(:minYearBuilt as integer) is null or b.year_built >= cast(:minYearBuilt as integer))
+              and (cast(:maxYearBuilt as integer) is null or b.year_built <= cast(:maxYearBuilt as integer))
+              and (cast(:minFloors as integer) is null or b.floors >= cast(:minFloors as integer))
+              and (cast(:maxFloors as integer) is null or b.floors <= cast(:maxFloors as integer))
+            """, nativeQuery = true)
+    List<BuildingCentroid> searchCentroidsInBbox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat,
+            @Param("neighborhood") String neighborhood,
+            @Param("buildingType") String buildingType,
+            @Param("minYearBuilt") Integer minYearBuilt,
+            @Param("maxYearBuilt") Integer maxYearBuilt,
+            @Param("minFloors") Integer minFloors,
+            @Param("maxFloors") Integer maxFloors
+    );
+
+    // cells are keyed by the center of each building's bbox, which is cheap to get
+    // from the stored geometry
+    @Query(value = """
+            select c.cell_x as "cellX", c.cell_y as "cellY", count(*) as count,
+                   avg(c.x) as lng, avg(c.y) as lat
+            from (
+                select (ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 as x,
+                       (ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 as y,
+                       cast(floor((ST_XMin(b.geom) + ST_XMax(b.geom)) / 2 / :cellSize) as bigint) as cell_x,
+                       cast(floor((ST_YMin(b.geom) + ST_YMax(b.geom)) / 2 / :cellSize) as bigint) as cell_y
+                from buildings b
+                where b.geom is not null
+                  and ST_Within(b.geom, ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326))
+                  and (cast(:neighborhood as text) is null or b.neighborhood = cast(:neighborhood as text))
+                  and (cast(:buildingType as text) is null or b.building_type = cast(:buildingType as text))
+                  and (cast(:minYearBuilt as integer) is null or b.year_built >= cast(:minYearBuilt as integer))
+                  and (cast(:maxYearBuilt as integer) is null or b.year_built <= cast(:maxYearBuilt as integer))
+                  and (cast(:minFloors as integer) is null or b.floors >= cast(:minFloors as integer))
+                  and (cast(:maxFloors as integer) is null or b.floors <= cast(:maxFloors as integer))
+            ) c
+            group by c.cell_x, c.cell_y
+            """, nativeQuery = true)
+    List<BuildingCluster> aggregateInBbox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat,
+            @Param("neighborhood") String neighborhood,
+            @Param("buildingType") String buildingType,
+            @Param("minYearBuilt") Integer minYearBuilt,
+            @Param("maxYearBuilt") Integer maxYearBuilt,
+            @Param("minFloors") Integer minFloors,
+            @Param("maxFloors") Integer maxFloors,
+            @Param("cellSize") double cellSize
+    );
+
 }
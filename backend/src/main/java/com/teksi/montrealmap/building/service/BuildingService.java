@@ -2,18 +2,46 @@ package com.teksi.montrealmap.building.service;
 
 import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
 import com.teksi.montrealmap.building.dto.BuildingDetailsResponse;
-import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.load.LevelOfDetail;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJson;
+import org.locationtech.jts.geom.Envelope;
 
 import java.util.List;
 
 public interface BuildingService {
     BuildingDetailsResponse getBuilding(String id);
-    List<BuildingDetailsResponse> search(BuildingSearchRequest req);
 
-    GeoJson.FeatureCollection searchGeoJson(BuildingSearchRequest req);
+    /**
+     * The buildings with the given ids, in request order; unknown ids are skipped.
+     */
+    List<BuildingDetailsResponse> getBuildings(List<String> ids);
 
-    GeoJson.FeatureCollection searchGeoJsonFull(BuildingSearchRequest req);
+    SerializedResponse search(BuildingSearchRequest req);
 
-    GeoJson.FeatureCollection searchGeoJsonPolygons(BuildingSearchRequest req);
+    SerializedResponse searchGeoJson(BuildingSearchRequest req);
+
+    SerializedResponse searchGeoJsonFull(BuildingSearchRequest req);
+
+    SerializedResponse searchGeoJsonPolygons(BuildingSearchRequest req);
+
+    SerializedResponse searchGeoJsonCentroids(BuildingSearchRequest req);
+
+    SerializedResponse searchGeoJsonAggregates(BuildingSearchRequest req);
+
+    /**
+     * GeoJSON tile of the buildings in {@code bounds}. As polygons, the whole
+     * geometry of every building intersecting the bounds, so adjacent tiles both
+     * draw a building on their shared edge; as centroids or aggregates, each
+     * building is counted in the one tile holding its bbox center.
+     */
+    byte[] renderTile(Envelope bounds, LevelOfDetail level);
+
+    /**
+     * Building polygons as a progressive response: centroids first, then the
+     * polygons in chunks. Below {@link LevelOfDetail#POLYGONS}, only the coarse
+     * layer at the given level.
+     */
+    ProgressiveGeoJson progressiveGeoJsonPolygons(BuildingSearchRequest req, LevelOfDetail level);
 
 }
@@ -1,24 +1,58 @@
 package com.teksi.montrealmap.building.service;
 
+import com.teksi.montrealmap.building.controller.BuildingField;
 import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
 import com.teksi.montrealmap.building.dto.BuildingDetailsResponse;
 import com.teksi.montrealmap.building.entity.Building;
+import com.teksi.montrealmap.building.repository.BuildingCentroid;
+import com.teksi.montrealmap.building.repository.BuildingCluster;
+import com.teksi.montrealmap.building.repository.BuildingProjectionRepository;
 import com.teksi.montrealmap.building.repository.BuildingRepository;
+import com.teksi.montrealmap.building.store.BuildingStore;
+import com.teksi.montrealmap.cache.RequestCoalescer;
+import com.teksi.montrealmap.cache.ResponseCache;
+import com.teksi.montrealmap.cache.SerializedResponse;
 import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.LevelOfDetail;
+import com.teksi.montrealmap.load.LoadSheddingProperties;
+import com.teksi.montrealmap.profiling.GeometryProfile;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJson;
+import com.teksi.montrealmap.progressive.ProgressiveProperties;
 import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class BuildingServiceImpl implements BuildingService {
 
     private final BuildingRepository buildingRepository;
+    private final BuildingProjectionRepository buildingProjectionRepository;
+    private final BuildingStore buildingStore;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCache responseCache;
+    private final LoadSheddingProperties loadSheddingProperties;
+    private final ProgressiveProperties progressiveProperties;
+    private final JsonMapper jsonMapper;
 
     @Override
     public BuildingDetailsResponse getBuilding(String id) {
@@ -36,38 +70,94 @@ public class BuildingServiceImpl implements BuildingService {
     }
 
     @Override
-    public List<BuildingDetailsResponse> search(BuildingSearchRequest req) {
-        List<Building> buildings = buildingRepository.searchInBbox(
-                req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
-                req.neighborhood(),
-                req.buildingType(),
-                req.minYearBuilt(), req.maxYearBuilt(),
-                req.minFloors(), req.maxFloors()
-        );
+    public List<BuildingDetailsResponse> getBuildings(List<String> ids) {
+        return buildingRepository.loadAll(ids.stream().distinct().toList()).stream()
+                .map(this::toDetails)
+                .toList();
+    }
 
-        return buildings.stream().map(this::toDetails).toList();
+    @Override
+    public SerializedResponse search(BuildingSearchRequest req) {
+        return requestCoalescer.execute("buildings.search", req.normalized(), () -> {
+            try (GeometryProfile.Scope ignored = GeometryProfile.open("buildings.search", req.bounds())) {
+                List<Building> buildings = fetchBuildings(req);
+                if (req.fields() == null) return serialize(buildings.stream().map(this::toDetails).toList());
+                return serialize(buildings.stream().map(b -> toSparseDetails(toDetails(b), req.fields())).toList());
+            }
+        });
     }
 
     @Override
-    public GeoJson.FeatureCollection searchGeoJson(BuildingSearchRequest req) {
+    public SerializedResponse searchGeoJson(BuildingSearchRequest req) {
+        return cachedGeometry("buildings.searchGeoJson", req, () -> {
+            List<Building> buildings = fetchBuildings(req);
+            List<GeoJson.Feature> features = GeometryProfile.conversion(() -> buildings.stream()
+                    .map(this::toDetails)
+                    .map(b -> toGeoFeature(b, req.fields()))
+                    .flatMap(Optional::stream)
+                    .toList());
+
+            return serialize(GeoJson.FeatureCollection.of(features));
+        });
+    }
 
-        List<GeoJson.Feature> features = fetchBuildings(req).stream()
-                .map(this::toDetails)
-                .map(this::toGeoFeature)
-                .flatMap(Optional::stream)
-                .toList();
+    // geometry responses are large and requested repeatedly for the same viewport,
+    // so they go through the response cache, which also keeps compressed variants
+    private SerializedResponse cachedGeometry(String operation, BuildingSearchRequest req,
+                                              Supplier<SerializedResponse> computation) {
+        BuildingSearchRequest key = req.normalized();
+        return responseCache.get(operation, key, () -> requestCoalescer.execute(operation, key, () -> {
+            try (GeometryProfile.Scope ignored = GeometryProfile.open(operation, key.bounds())) {
+                return computation.get();
+            }
+        }));
+    }
+
+    private SerializedResponse serialize(GeoJson.FeatureCollection collection) {
+        return serialize(collection, collection.features().size(), () -> GeometryProfile.vertices(collection.features()));
+    }
+
+    private SerializedResponse serialize(List<?> items) {
+        return serialize(items, items.size(), () -> 0);
+    }
 
-        return GeoJson.FeatureCollection.of(features);
+    private SerializedResponse serialize(Object body, int featureCount, LongSupplier vertexCount) {
+        Cancellation.current().throwIfCancelled("serialization");
+        return SerializedResponse.of(GeometryProfile.serialization(featureCount, vertexCount,
+                () -> jsonMapper.writeValueAsBytes(body)));
     }
 
+    private static long vertices(List<Building> buildings) {
+        return buildings.stream().map(Building::getGeom).filter(Objects::nonNull).mapToLong(Geometry::getNumPoints).sum();
+    }
+
+    // with fields=, only the selected columns are read from the database
     private List<Building> fetchBuildings(BuildingSearchRequest req) {
-        return buildingRepository.searchInBbox(
-                req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
-                req.neighborhood(),
-                req.buildingType(),
-                req.minYearBuilt(), req.maxYearBuilt(),
-                req.minFloors(), req.maxFloors()
-        );
+        return GeometryProfile.hydration(() -> buildingStore.current()
+                .map(snapshot -> snapshot.searchInBbox(req))
+                .orElseGet(() -> req.fields() != null
+                        ? buildingProjectionRepository.searchInBbox(req, false)
+                        : buildingRepository.searchInBbox(
+                        req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
+                        req.neighborhood(),
+                        req.buildingType(),
+                        req.minYearBuilt(), req.maxYearBuilt(),
+                        req.minFloors(), req.maxFloors()
+                )), BuildingServiceImpl::vertices);
+    }
+
+    private List<Building> fetchPolygons(BuildingSearchRequest req) {
+        return GeometryProfile.hydration(() -> buildingStore.current()
+                .map(snapshot -> snapshot.searchPolygonsInBbox(req))
+                .orElseGet(() -> req.fields() != null
+                        ? buildingProjectionRepository.searchInBbox(req, true)
+                        : buildingRepository.searchPolygonsInBbox(
+                        req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
+                        req.neighborhood(),
+                        req.buildingType(),
+                        req.minYearBuilt(), req.maxYearBuilt(),
+                        req.minFloors(), req.maxFloors()
+                )), BuildingServiceImpl::vertices);
     }
 
     private BuildingDetailsResponse toDetails(Building building) {
@@ -94,63 +184,243 @@ public class BuildingServiceImpl implements BuildingService {
         );
     }
 
-    private Optional<GeoJson.Feature> toGeoFeature(BuildingDetailsResponse b) {
-        if (b.longitude() == null || b.latitude() == null) return Optional.empty();
+    private Map<String, Object> toSparseDetails(BuildingDetailsResponse b, Set<BuildingField> fields) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("id", b.id());
+        details.putAll(select(attributes(b.address(), b.neighborhood(), b.yearBuilt(), b.floors(), b.buildingType()), fields));
+        if (fields.contains(BuildingField.GEOMETRY)) {
+            details.put("longitude", b.longitude());
+            details.put("latitude", b.latitude());
+        }
+        return details;
+    }
 
-        GeoJson.Geometry geom = GeoJson.Geometry.point(b.longitude(), b.latitude());
+    private Optional<GeoJson.Feature> toGeoFeature(BuildingDetailsResponse b, @Nullable Set<BuildingField> fields) {
+        GeoJson.Geometry geom = null;
+        if (BuildingField.isSelected(fields, BuildingField.GEOMETRY)) {
+            if (b.longitude() == null || b.latitude() == null) return Optional.empty();
+            geom = GeoJson.Geometry.point(b.longitude(), b.latitude());
+        }
 
-        Map<String, Object> props = new LinkedHashMap<>();
-        props.put("address", b.address());
-        props.put("neighborhood", b.neighborhood());
-        props.put("yearBuilt", b.yearBuilt());
-        props.put("floors", b.floors());
-        props.put("buildingType", b.buildingType());
+        Map<String, Object> props = attributes(b.address(), b.neighborhood(), b.yearBuilt(), b.floors(), b.buildingType());
+        return Optional.of(GeoJson.Feature.of(b.id(), geom, select(props, fields)));
+    }
 
-        return Optional.of(GeoJson.Feature.of(b.id(), geom, props));
+    // drops the properties not asked for with fields= (GeoJSON features without
+    // geometry keep a null geometry, as the format allows)
+    private static Map<String, Object> select(Map<String, Object> props, @Nullable Set<BuildingField> fields) {
+        if (fields == null) return props;
+        props.keySet().removeIf(name -> fields.stream().noneMatch(field -> field.fieldName().equals(name)));
+        return props;
     }
 
 
     @Override
-    public GeoJson.FeatureCollection searchGeoJsonFull(BuildingSearchRequest req) {
-        List<GeoJson.Feature> features = fetchBuildings(req).stream()
-                .map(this::toGeoFeatureFull)
-                .flatMap(java.util.Optional::stream)
-                .toList();
+    public SerializedResponse searchGeoJsonFull(BuildingSearchRequest req) {
+        return cachedGeometry("buildings.searchGeoJsonFull", req, () -> {
+            List<Building> buildings = fetchBuildings(req);
+            List<GeoJson.Feature> features = GeometryProfile.conversion(() -> buildings.stream()
+                    .map(b -> toGeoFeatureFull(b, req.fields()))
+                    .flatMap(java.util.Optional::stream)
+                    .toList());
+
+            return serialize(GeoJson.FeatureCollection.of(features));
+        });
+    }
 
-        return GeoJson.FeatureCollection.of(features);
+    // not cached here: TileService keeps the rendered tiles
+    @Override
+    public byte[] renderTile(Envelope bounds, LevelOfDetail level) {
+        try (GeometryProfile.Scope ignored = GeometryProfile.open("tiles.buildings", bounds)) {
+            List<GeoJson.Feature> features = switch (level) {
+                case POLYGONS -> {
+                    List<Building> buildings = GeometryProfile.hydration(() -> buildingStore.current()
+                            .map(snapshot -> snapshot.intersectingBbox(bounds))
+                            .orElseGet(() -> buildingRepository.intersectingBbox(
+                                    bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY())),
+                            BuildingServiceImpl::vertices);
+                    yield GeometryProfile.conversion(() -> buildings.stream()
+                            .map(b -> toGeoFeatureFull(b, null))
+                            .flatMap(Optional::stream)
+                            .toList());
+                }
+                case CENTROIDS -> GeometryProfile.hydration(() -> buildingStore.current()
+                        .map(snapshot -> snapshot.centeredInBbox(bounds).stream()
+                                .map(b -> toCentroidFeature(b, null))
+                                .toList())
+                        .orElseGet(() -> buildingRepository.centroidsCenteredInBbox(
+                                        bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY()
+                                ).stream()
+                                .map(c -> toCentroidFeature(c.getId(), c.getLng(), c.getLat(), attributes(
+                                        c.getAddress(), c.getNeighborhood(), c.getYearBuilt(), c.getFloors(), c.getBuildingType()), null))
+                                .toList()), GeometryProfile::vertices);
+                case AGGREGATES -> {
+                    double cellSize = aggregateCellSize(bounds);
+                    yield GeometryProfile.hydration(() -> buildingStore.current()
+                            .map(snapshot -> aggregate(snapshot.centeredInBbox(bounds), cellSize))
+                            .orElseGet(() -> buildingRepository.aggregateCenteredInBbox(
+                                            bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), cellSize
+                                    ).stream()
+                                    .map(c -> toClusterFeature(c.getCellX(), c.getCellY(), c.getCount(), c.getLng(), c.getLat()))
+                                    .toList()), GeometryProfile::vertices);
+                }
+            };
+
+            return serialize(GeoJson.FeatureCollection.of(features)).json();
+        }
     }
 
     @Override
-    public GeoJson.FeatureCollection searchGeoJsonPolygons(BuildingSearchRequest req) {
-        List<Building> buildings = buildingRepository.searchPolygonsInBbox(
-                req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
-                req.neighborhood(),
-                req.buildingType(),
-                req.minYearBuilt(), req.maxYearBuilt(),
-                req.minFloors(), req.maxFloors()
-        );
+    public SerializedResponse searchGeoJsonPolygons(BuildingSearchRequest req) {
+        return cachedGeometry("buildings.searchGeoJsonPolygons", req, () -> {
+            List<Building> buildings = fetchPolygons(req);
+            List<GeoJson.Feature> features = GeometryProfile.conversion(() -> buildings.stream()
+                    .map(b -> toGeoFeatureFromGeom(b, req.fields()))
+                    .toList());
+
+            return serialize(GeoJson.FeatureCollection.of(features));
+        });
+    }
 
-        List<GeoJson.Feature> features = buildings.stream()
-                .map(this::toGeoFeatureFromGeom)
-                .toList();
+    @Override
+    public SerializedResponse searchGeoJsonCentroids(BuildingSearchRequest req) {
+        return cachedGeometry("buildings.searchGeoJsonCentroids", req, () ->
+                serialize(GeoJson.FeatureCollection.of(fetchCentroids(req))));
+    }
+
+    private record ProgressiveKey(BuildingSearchRequest req, LevelOfDetail level) {}
+
+    // not cached: the polygons are loaded once and converted chunk by chunk as they are written,
+    // so only the loading is shared between identical requests
+    @Override
+    public ProgressiveGeoJson progressiveGeoJsonPolygons(BuildingSearchRequest search, LevelOfDetail level) {
+        // both layers are made from the geometry, whatever fields= selects
+        BuildingSearchRequest req = search.withField(BuildingField.GEOMETRY).normalized();
+        return requestCoalescer.execute("buildings.progressiveGeoJsonPolygons", new ProgressiveKey(req, level), () ->
+                switch (level) {
+                    case POLYGONS -> {
+                        List<Building> buildings = fetchPolygons(req);
+                        List<GeoJson.Feature> centroids = GeometryProfile.conversion(() -> buildings.stream()
+                                .map(b -> toCentroidFeature(b, req.fields()))
+                                .toList());
+                        yield ProgressiveGeoJson.of(req.bounds(), centroids, buildings,
+                                b -> b.getGeom().getEnvelopeInternal(),
+                                b -> toGeoFeatureFromGeom(b, req.fields()),
+                                progressiveProperties.chunkSize());
+                    }
+                    case CENTROIDS -> ProgressiveGeoJson.coarseOnly(req.bounds(), fetchCentroids(req));
+                    case AGGREGATES -> ProgressiveGeoJson.coarseOnly(req.bounds(), fetchAggregates(req));
+                });
+    }
+
+    @Override
+    public SerializedResponse searchGeoJsonAggregates(BuildingSearchRequest req) {
+        return cachedGeometry("buildings.searchGeoJsonAggregates", req, () ->
+                serialize(GeoJson.FeatureCollection.of(fetchAggregates(req))));
+    }
+
+    // centroids and aggregates are loaded and converted in one pass, recorded as hydration
+    private List<GeoJson.Feature> fetchCentroids(BuildingSearchRequest req) {
+        return GeometryProfile.hydration(() -> buildingStore.current()
+                .map(snapshot -> snapshot.searchInBbox(req).stream()
+                        .map(b -> toCentroidFeature(b, req.fields()))
+                        .toList())
+                .orElseGet(() -> buildingRepository.searchCentroidsInBbox(
+                                req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
+                                req.neighborhood(),
+                                req.buildingType(),
+                                req.minYearBuilt(), req.maxYearBuilt(),
+                                req.minFloors(), req.maxFloors()
+                        ).stream()
+                        .map(c -> toCentroidFeature(c.getId(), c.getLng(), c.getLat(), attributes(
+                                c.getAddress(), c.getNeighborhood(), c.getYearBuilt(), c.getFloors(), c.getBuildingType()),
+                                req.fields()))
+                        .toList()), GeometryProfile::vertices);
+    }
+
+    private GeoJson.Feature toCentroidFeature(Building b, @Nullable Set<BuildingField> fields) {
+        Point point = b.getGeom().getInteriorPoint();
+        return toCentroidFeature(b.getId(), point.getX(), point.getY(), attributes(
+                b.getAddress(), b.getNeighborhood(), b.getYearBuilt(), b.getFloors(), b.getBuildingType()), fields);
+    }
 
-        return GeoJson.FeatureCollection.of(features);
+    private GeoJson.Feature toCentroidFeature(String id, double lng, double lat, Map<String, Object> props,
+                                              @Nullable Set<BuildingField> fields) {
+        GeoJson.Geometry point = BuildingField.isSelected(fields, BuildingField.GEOMETRY) ? GeoJson.Geometry.point(lng, lat) : null;
+        return GeoJson.Feature.of(id, point, select(props, fields));
     }
 
-    private java.util.Optional<GeoJson.Feature> toGeoFeatureFull(Building b) {
-        if (b.getGeom() == null) return java.util.Optional.empty();
+    private Map<String, Object> attributes(String address, String neighborhood, Integer yearBuilt,
+                                           Integer floors, String buildingType) {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("address", address);
+        props.put("neighborhood", neighborhood);
+        props.put("yearBuilt", yearBuilt);
+        props.put("floors", floors);
+        props.put("buildingType", buildingType);
+        return props;
+    }
+
+    private List<GeoJson.Feature> fetchAggregates(BuildingSearchRequest req) {
+        double cellSize = aggregateCellSize(req.bounds());
+        if (!(cellSize > 0)) return List.of();
+
+        return GeometryProfile.hydration(() -> buildingStore.current()
+                .map(snapshot -> aggregate(snapshot.searchInBbox(req), cellSize))
+                .orElseGet(() -> buildingRepository.aggregateInBbox(
+                        req.minLng(), req.minLat(), req.maxLng(), req.maxLat(),
+                        req.neighborhood(),
+                        req.buildingType(),
+                        req.minYearBuilt(), req.maxYearBuilt(),
+                        req.minFloors(), req.maxFloors(),
+                        cellSize
+                ).stream()
+                        .map(c -> toClusterFeature(c.getCellX(), c.getCellY(), c.getCount(), c.getLng(), c.getLat()))
+                        .toList()), GeometryProfile::vertices);
+    }
 
-        GeoJson.Geometry geometry = toGeoJsonGeometry(b.getGeom());
-        if (geometry == null) return java.util.Optional.empty();
+    // about aggregateGridSize cells along the longer side of the bbox
+    private double aggregateCellSize(Envelope bbox) {
+        return Math.max(bbox.getWidth(), bbox.getHeight()) / loadSheddingProperties.aggregateGridSize();
+    }
+
+    // same cells as BuildingRepository.aggregateInBbox
+    private List<GeoJson.Feature> aggregate(List<Building> buildings, double cellSize) {
+        Map<List<Long>, double[]> cells = new HashMap<>();
+        for (Building b : buildings) {
+            Envelope envelope = b.getGeom().getEnvelopeInternal();
+            double x = (envelope.getMinX() + envelope.getMaxX()) / 2;
+            double y = (envelope.getMinY() + envelope.getMaxY()) / 2;
+            double[] sums = cells.computeIfAbsent(
+                    List.of((long) Math.floor(x / cellSize), (long) Math.floor(y / cellSize)), cell -> new double[3]);
+            sums[0]++;
+            sums[1] += x;
+            sums[2] += y;
+        }
 
+        List<GeoJson.Feature> features = new ArrayList<>(cells.size());
+        cells.forEach((cell, sums) -> features.add(toClusterFeature(
+                cell.get(0), cell.get(1), (long) sums[0], sums[1] / sums[0], sums[2] / sums[0])));
+        return features;
+    }
+
+    private GeoJson.Feature toClusterFeature(long cellX, long cellY, long count, double lng, double lat) {
         Map<String, Object> props = new LinkedHashMap<>();
-        props.put("address", b.getAddress());
-        props.put("neighborhood", b.getNeighborhood());
-        props.put("yearBuilt", b.getYearBuilt());
-        props.put("floors", b.getFloors());
-        props.put("buildingType", b.getBuildingType());
+        props.put("count", count);
+        return GeoJson.Feature.of(cellX + "/" + cellY, GeoJson.Geometry.point(lng, lat), props);
+    }
 
-        return java.util.Optional.of(GeoJson.Feature.of(b.getId(), geometry, props));
+    private java.util.Optional<GeoJson.Feature> toGeoFeatureFull(Building b, @Nullable Set<BuildingField> fields) {
+        GeoJson.Geometry geometry = null;
+        if (BuildingField.isSelected(fields, BuildingField.GEOMETRY)) {
+            if (b.getGeom() == null) return java.util.Optional.empty();
+
+            geometry = toGeoJsonGeometry(b.getGeom());
+            if (geometry == null) return java.util.Optional.empty();
+        }
+
+        Map<String, Object> props = attributes(b.getAddress(), b.getNeighborhood(), b.getYearBuilt(), b.getFloors(), b.getBuildingType());
+        return java.util.Optional.of(GeoJson.Feature.of(b.getId(), geometry, select(props, fields)));
     }
 
     // kept for compatibility, but now delegates to the correct converter
@@ -173,17 +443,12 @@ public class BuildingServiceImpl implements BuildingService {
         return GeoJson.Geometry.polygonFromOuterRing(ring);
     }
 
-    private GeoJson.Feature toGeoFeatureFromGeom(Building b) {
-        GeoJson.Geometry geometry = toGeoJsonGeometry(b.getGeom());
-
-        Map<String, Object> props = new LinkedHashMap<>();
-        props.put("address", b.getAddress());
-        props.put("neighborhood", b.getNeighborhood());
-        props.put("yearBuilt", b.getYearBuilt());
-        props.put("floors", b.getFloors());
-        props.put("buildingType", b.getBuildingType());
+    // the store always has the geometry, the projection only when selected: fields= decides, not the source
+    private GeoJson.Feature toGeoFeatureFromGeom(Building b, @Nullable Set<BuildingField> fields) {
+        GeoJson.Geometry geometry = BuildingField.isSelected(fields, BuildingField.GEOMETRY) ? toGeoJsonGeometry(b.getGeom()) : null;
 
-        return GeoJson.Feature.of(b.getId(), geometry, props);
+        Map<String, Object> props = attributes(b.getAddress(), b.getNeighborhood(), b.getYearBuilt(), b.getFloors(), b.getBuildingType());
+        return GeoJson.Feature.of(b.getId(), geometry, select(props, fields));
     }
 
     private GeoJson.Geometry toGeoJsonGeometry(org.locationtech.jts.geom.Geometry g) {
@@ -0,0 +1,108 @@
+package com.teksi.montrealmap.building.store;
+
+import com.teksi.montrealmap.sync.DataChangedEvent;
+import com.teksi.montrealmap.sync.DataLayer;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link PackedBuildingSnapshot} when
+ * {@code montreal.buildings.in-memory.enabled} is set. Refreshes build a new
+ * snapshot in the background and swap it in atomically; readers never block and
+ * the previous snapshot (and its off-heap buffers) is released once unreferenced.
+ * Besides the periodic refresh, the store reloads when building data changes.
+ */
+@Slf4j
+@Component
+public class BuildingStore {
+
+    private static final String LOAD_SQL = """
+            select id, address, neighborhood, year_built, floors, building_type, ST_AsBinary(geom) as wkb
+            from buildings
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final BuildingStoreProperties properties;
+    private final AtomicReference<PackedBuildingSnapshot> snapshot = new AtomicReference<>();
+
+    public BuildingStore(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         BuildingStoreProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    /**
+     * The snapshot to serve from, or empty when the store is disabled or the
+     * first load has not finished yet.
+     */
+    public Optional<PackedBuildingSnapshot> current() {
+        return properties.enabled() ? Optional.ofNullable(snapshot.get()) : Optional.empty();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${montreal.buildings.in-memory.refresh-interval:10m}")
+    public void refresh() {
+        if (!properties.enabled()) return;
+
+        long start = System.nanoTime();
+        try {
+            PackedBuildingSnapshot loaded = load();
+            snapshot.set(loaded);
+            log.info("Loaded {} buildings into memory in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Building store refresh failed, keeping previous snapshot", e);
+        }
+    }
+
+    // before the response cache is invalidated, so it is not refilled from the old snapshot
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        if (event.layer() == DataLayer.BUILDINGS) refresh();
+    }
+
+    private PackedBuildingSnapshot load() {
+        PackedBuildingSnapshot.Builder builder = new PackedBuildingSnapshot.Builder();
+        WKBReader wkbReader = new WKBReader();
+
+        // a cursor (fetch size inside a transaction) keeps the JDBC driver from
+        // buffering the whole table on the heap
+        readOnlyTransaction.executeWithoutResult(status -> {
+            JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+            cursor.setFetchSize(properties.fetchSize());
+            cursor.query(LOAD_SQL, rs -> {
+                byte[] wkb = rs.getBytes("wkb");
+                try {
+                    builder.add(
+                            rs.getString("id"),
+                            rs.getString("address"),
+                            rs.getString("neighborhood"),
+                            (Integer) rs.getObject("year_built"),
+                            (Integer) rs.getObject("floors"),
+                            rs.getString("building_type"),
+                            wkb == null ? null : wkbReader.read(wkb)
+                    );
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Invalid geometry for building " + rs.getString("id"), e);
+                }
+            });
+        });
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.teksi.montrealmap.building.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.buildings.in-memory")
+public record BuildingStoreProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10m") Duration refreshInterval,
+        @DefaultValue("10000") int fetchSize
+) {}
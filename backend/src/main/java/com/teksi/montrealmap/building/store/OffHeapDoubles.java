@@ -0,0 +1,50 @@
+package com.teksi.montrealmap.building.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Growable append-only buffer of doubles allocated outside the Java heap.
+ */
+final class OffHeapDoubles {
+
+    private DoubleBuffer buffer;
+
+    OffHeapDoubles(int initialCapacity) {
+        buffer = allocate(Math.max(16, initialCapacity));
+    }
+
+    void add(double value) {
+        if (!buffer.hasRemaining()) {
+            DoubleBuffer grown = allocate(buffer.capacity() * 2);
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        buffer.put(value);
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Copies the content into an exactly sized read-only buffer; this builder
+     * must not be used afterwards.
+     */
+    DoubleBuffer toReadOnlyBuffer() {
+        DoubleBuffer exact = allocate(Math.max(1, buffer.position()));
+        buffer.flip();
+        exact.put(buffer);
+        exact.flip();
+        buffer = null;
+        return exact.asReadOnlyBuffer();
+    }
+
+    static DoubleBuffer allocate(int doubles) {
+        return ByteBuffer.allocateDirect(doubles * Double.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+    }
+}
@@ -0,0 +1,437 @@
+package com.teksi.montrealmap.building.store;
+
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import com.teksi.montrealmap.building.entity.Building;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable column-oriented copy of the {@code buildings} table.
+ * <p>
+ * Geometries are flattened into offset arrays (building -> polygons -> rings
+ * -> coordinates) over one off-heap coordinate buffer, low-cardinality text is
+ * dictionary-encoded, and numeric attributes are plain {@code int} columns with
+ * {@link #NULL_INT} standing in for SQL null. Searches mirror the semantics of
+ * {@code BuildingRepository.searchInBbox}, {@code searchPolygonsInBbox},
+ * {@code intersectingBbox} and {@code centeredInBbox}.
+ */
+public final class PackedBuildingSnapshot {
+
+    static final int NULL_INT = Integer.MIN_VALUE;
+
+    private static final byte NO_GEOMETRY = 0;
+    private static final byte POINT = 1;
+    private static final byte POLYGON = 2;
+    private static final byte MULTI_POLYGON = 3;
+    private static final byte OTHER = 4;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private final int size;
+    private final PackedStrings ids;
+    private final PackedStrings addresses;
+    private final Dictionary neighborhoods;
+    private final Dictionary buildingTypes;
+    private final int[] yearBuilt;
+    private final int[] floors;
+
+    private final byte[] geometryTypes;
+    private final int[] polygonStart;
+    private final int[] ringStart;
+    private final int[] coordinateStart;
+    private final DoubleBuffer coordinates;
+    // minX, minY, maxX, maxY per building
+    private final DoubleBuffer bounds;
+    // geometry types the packed layout does not cover (lines, collections); rare
+    private final Map<Integer, Geometry> otherGeometries;
+
+    private final PackedHilbertRTree index;
+
+    private PackedBuildingSnapshot(Builder b) {
+        this.size = b.size;
+        this.ids = b.ids.build();
+        this.addresses = b.addresses.build();
+        this.neighborhoods = b.neighborhoods.build(b.size);
+        this.buildingTypes = b.buildingTypes.build(b.size);
+        this.yearBuilt = Arrays.copyOf(b.yearBuilt, b.size);
+        this.floors = Arrays.copyOf(b.floors, b.size);
+        this.geometryTypes = Arrays.copyOf(b.geometryTypes, b.size);
+        this.polygonStart = Arrays.copyOf(b.polygonStart, b.size + 1);
+        this.ringStart = Arrays.copyOf(b.ringStart, b.polygonCount + 1);
+        this.coordinateStart = Arrays.copyOf(b.coordinateStart, b.ringCount + 1);
+        this.coordinates = b.coordinates.toReadOnlyBuffer();
+        this.bounds = b.bounds.toReadOnlyBuffer();
+        this.otherGeometries = Map.copyOf(b.otherGeometries);
+        this.index = b.index.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Building> searchInBbox(BuildingSearchRequest req) {
+        return search(req, false);
+    }
+
+    public List<Building> searchPolygonsInBbox(BuildingSearchRequest req) {
+        return search(req, true);
+    }
+
+    /**
+     * Buildings whose geometry intersects {@code bbox}, its boundary included
+     * (ST_Intersects).
+     */
+    public List<Building> intersectingBbox(Envelope bbox) {
+        int[] count = new int[1];
+        int[] hits = index.search(bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY(), new int[64], count);
+        Geometry area = GEOMETRY_FACTORY.toGeometry(bbox);
+
+        List<Building> result = new ArrayList<>(count[0]);
+        for (int i = 0; i < count[0]; i++) {
+            int item = hits[i];
+            if (geometryTypes[item] == NO_GEOMETRY) continue;
+            Building building = materialize(item);
+            // the index only compares bounding boxes; a geometry whose bbox is inside needs no exact test
+            int b = item * 4;
+            boolean inside = bounds.get(b) >= bbox.getMinX() && bounds.get(b + 2) <= bbox.getMaxX()
+                    && bounds.get(b + 1) >= bbox.getMinY() && bounds.get(b + 3) <= bbox.getMaxY();
+            if (inside || building.getGeom().intersects(area)) result.add(building);
+        }
+        return result;
+    }
+
+    /**
+     * Buildings whose bbox center lies in {@code bbox}, its minimum edges
+     * included and its maximum edges excluded, so that each building is in
+     * exactly one of a set of adjacent tiles.
+     */
+    public List<Building> centeredInBbox(Envelope bbox) {
+        int[] count = new int[1];
+        int[] hits = index.search(bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY(), new int[64], count);
+
+        List<Building> result = new ArrayList<>(count[0]);
+        for (int i = 0; i < count[0]; i++) {
+            int item = hits[i];
+            if (geometryTypes[item] == NO_GEOMETRY) continue;
+            int b = item * 4;
+            double x = (bounds.get(b) + bounds.get(b + 2)) / 2;
+            double y = (bounds.get(b + 1) + bounds.get(b + 3)) / 2;
+            if (x >= bbox.getMinX() && x < bbox.getMaxX() && y >= bbox.getMinY() && y < bbox.getMaxY()) {
+                result.add(materialize(item));
+            }
+        }
+        return result;
+    }
+
+    private List<Building> search(BuildingSearchRequest req, boolean polygonsOnly) {
+        int[] count = new int[1];
+        int[] hits = index.search(req.minLng(), req.minLat(), req.maxLng(), req.maxLat(), new int[64], count);
+        int n = count[0];
+
+        n = filterWithin(hits, n, req.minLng(), req.minLat(), req.maxLng(), req.maxLat());
+        if (polygonsOnly) n = filterPolygons(hits, n);
+        if (req.neighborhood() != null) n = neighborhoods.filterEquals(req.neighborhood(), hits, n);
+        if (req.buildingType() != null) n = buildingTypes.filterEquals(req.buildingType(), hits, n);
+        if (req.minYearBuilt() != null) n = filterAtLeast(yearBuilt, req.minYearBuilt(), hits, n);
+        if (req.maxYearBuilt() != null) n = filterAtMost(yearBuilt, req.maxYearBuilt(), hits, n);
+        if (req.minFloors() != null) n = filterAtLeast(floors, req.minFloors(), hits, n);
+        if (req.maxFloors() != null) n = filterAtMost(floors, req.maxFloors(), hits, n);
+
+        List<Building> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            result.add(materialize(hits[i]));
+        }
+        return result;
+    }
+
+    // ST_Within(geom, envelope): the geometry's bbox must lie inside the envelope,
+    // and a point on the envelope boundary is not within it
+    private int filterWithin(int[] hits, int n, double minX, double minY, double maxX, double maxY) {
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int item = hits[i];
+            byte type = geometryTypes[item];
+            if (type == NO_GEOMETRY) continue;
+
+            int b = item * 4;
+            double gMinX = bounds.get(b), gMinY = bounds.get(b + 1);
+            double gMaxX = bounds.get(b + 2), gMaxY = bounds.get(b + 3);
+            boolean inside = type == POINT
+                    ? gMinX > minX && gMaxX < maxX && gMinY > minY && gMaxY < maxY
+                    : gMinX >= minX && gMaxX <= maxX && gMinY >= minY && gMaxY <= maxY;
+            if (inside) hits[kept++] = item;
+        }
+        return kept;
+    }
+
+    private int filterPolygons(int[] hits, int n) {
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            byte type = geometryTypes[hits[i]];
+            if (type == POLYGON || type == MULTI_POLYGON) hits[kept++] = hits[i];
+        }
+        return kept;
+    }
+
+    private static int filterAtLeast(int[] column, int min, int[] hits, int n) {
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int item = hits[i];
+            // NULL_INT is below any bound, so null never satisfies ">="
+            if (column[item] >= min) hits[kept++] = item;
+        }
+        return kept;
+    }
+
+    private static int filterAtMost(int[] column, int max, int[] hits, int n) {
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int item = hits[i];
+            int value = column[item];
+            if (value <= max && value != NULL_INT) hits[kept++] = item;
+        }
+        return kept;
+    }
+
+    private Building materialize(int item) {
+        return new Building(
+                ids.get(item),
+                addresses.get(item),
+                neighborhoods.get(item),
+                nullable(yearBuilt[item]),
+                nullable(floors[item]),
+                buildingTypes.get(item),
+                geometry(item)
+        );
+    }
+
+    private Geometry geometry(int item) {
+        switch (geometryTypes[item]) {
+            case POINT: {
+                int c = coordinateStart[ringStart[polygonStart[item]]];
+                return GEOMETRY_FACTORY.createPoint(new Coordinate(coordinates.get(c * 2), coordinates.get(c * 2 + 1)));
+            }
+            case POLYGON:
+                return polygon(polygonStart[item]);
+            case MULTI_POLYGON: {
+                int first = polygonStart[item];
+                Polygon[] polygons = new Polygon[polygonStart[item + 1] - first];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = polygon(first + i);
+                }
+                return GEOMETRY_FACTORY.createMultiPolygon(polygons);
+            }
+            case OTHER:
+                return otherGeometries.get(item).copy();
+            default:
+                return null;
+        }
+    }
+
+    private Polygon polygon(int p) {
+        int firstRing = ringStart[p];
+        int ringCount = ringStart[p + 1] - firstRing;
+        LinearRing shell = ring(firstRing);
+        LinearRing[] holes = new LinearRing[ringCount - 1];
+        for (int i = 1; i < ringCount; i++) {
+            holes[i - 1] = ring(firstRing + i);
+        }
+        return GEOMETRY_FACTORY.createPolygon(shell, holes);
+    }
+
+    private LinearRing ring(int r) {
+        int first = coordinateStart[r];
+        Coordinate[] coords = new Coordinate[coordinateStart[r + 1] - first];
+        for (int i = 0; i < coords.length; i++) {
+            int c = first + i;
+            coords[i] = new Coordinate(coordinates.get(c * 2), coordinates.get(c * 2 + 1));
+        }
+        return GEOMETRY_FACTORY.createLinearRing(coords);
+    }
+
+    private static Integer nullable(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    /**
+     * Dictionary-encoded text column; code -1 is null.
+     */
+    private static final class Dictionary {
+
+        private final String[] values;
+        private final Map<String, Integer> codes;
+        private final int[] column;
+
+        private Dictionary(String[] values, Map<String, Integer> codes, int[] column) {
+            this.values = values;
+            this.codes = codes;
+            this.column = column;
+        }
+
+        String get(int item) {
+            int code = column[item];
+            return code < 0 ? null : values[code];
+        }
+
+        int filterEquals(String value, int[] hits, int n) {
+            Integer code = codes.get(value);
+            if (code == null) return 0;
+
+            int wanted = code;
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                int item = hits[i];
+                if (column[item] == wanted) hits[kept++] = item;
+            }
+            return kept;
+        }
+
+        static final class Builder {
+
+            private final Map<String, Integer> codes = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+            private int[] column = new int[1024];
+
+            void set(int item, String value) {
+                if (item >= column.length) column = Arrays.copyOf(column, column.length * 2);
+                if (value == null) {
+                    column[item] = -1;
+                    return;
+                }
+                column[item] = codes.computeIfAbsent(value, v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+
+            Dictionary build(int size) {
+                return new Dictionary(values.toArray(String[]::new), Map.copyOf(codes), Arrays.copyOf(column, size));
+            }
+        }
+    }
+
+    static final class Builder {
+
+        private int size;
+        private final PackedStrings.Builder ids = new PackedStrings.Builder();
+        private final PackedStrings.Builder addresses = new PackedStrings.Builder();
+        private final Dictionary.Builder neighborhoods = new Dictionary.Builder();
+        private final Dictionary.Builder buildingTypes = new Dictionary.Builder();
+        private int[] yearBuilt = new int[1024];
+        private int[] floors = new int[1024];
+
+        private byte[] geometryTypes = new byte[1024];
+        private int[] polygonStart = new int[1025];
+        private int[] ringStart = new int[1025];
+        private int[] coordinateStart = new int[1025];
+        private int polygonCount;
+        private int ringCount;
+        private final OffHeapDoubles coordinates = new OffHeapDoubles(1 << 16);
+        private final OffHeapDoubles bounds = new OffHeapDoubles(4096);
+        private final Map<Integer, Geometry> otherGeometries = new HashMap<>();
+
+        private final PackedHilbertRTree.Builder index = new PackedHilbertRTree.Builder(1024);
+
+        void add(String id, String address, String neighborhood, Integer yearBuilt, Integer floors,
+                 String buildingType, Geometry geom) {
+            int item = size;
+            if (item + 1 >= polygonStart.length) {
+                int capacity = polygonStart.length * 2;
+                this.yearBuilt = Arrays.copyOf(this.yearBuilt, capacity);
+                this.floors = Arrays.copyOf(this.floors, capacity);
+                this.geometryTypes = Arrays.copyOf(this.geometryTypes, capacity);
+                this.polygonStart = Arrays.copyOf(this.polygonStart, capacity);
+            }
+
+            ids.add(id);
+            addresses.add(address);
+            neighborhoods.set(item, neighborhood);
+            buildingTypes.set(item, buildingType);
+            this.yearBuilt[item] = yearBuilt == null ? NULL_INT : yearBuilt;
+            this.floors[item] = floors == null ? NULL_INT : floors;
+
+            geometryTypes[item] = addGeometry(item, geom);
+            polygonStart[item + 1] = polygonCount;
+
+            Envelope env = geom == null || geom.isEmpty() ? new Envelope() : geom.getEnvelopeInternal();
+            bounds.add(env.getMinX());
+            bounds.add(env.getMinY());
+            bounds.add(env.getMaxX());
+            bounds.add(env.getMaxY());
+            if (!env.isNull()) {
+                index.add(item, env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY());
+            }
+            size++;
+        }
+
+        private byte addGeometry(int item, Geometry geom) {
+            if (geom == null || geom.isEmpty()) return NO_GEOMETRY;
+
+            if (geom instanceof Point point) {
+                // stored as one polygon with a single one-coordinate ring
+                beginPolygon();
+                addRing(new Coordinate[]{point.getCoordinate()});
+                return POINT;
+            }
+            if (geom instanceof Polygon polygon) {
+                addPolygon(polygon);
+                return POLYGON;
+            }
+            if (geom instanceof MultiPolygon multiPolygon) {
+                for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+                    addPolygon((Polygon) multiPolygon.getGeometryN(i));
+                }
+                return MULTI_POLYGON;
+            }
+            otherGeometries.put(item, geom);
+            return OTHER;
+        }
+
+        private void addPolygon(Polygon polygon) {
+            beginPolygon();
+            addRing(polygon.getExteriorRing().getCoordinates());
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                addRing(polygon.getInteriorRingN(i).getCoordinates());
+            }
+        }
+
+        private void beginPolygon() {
+            if (polygonCount + 2 >= ringStart.length) ringStart = Arrays.copyOf(ringStart, ringStart.length * 2);
+            ringStart[polygonCount] = ringCount;
+            polygonCount++;
+            ringStart[polygonCount] = ringCount;
+        }
+
+        private void addRing(Coordinate[] coords) {
+            if (ringCount + 2 >= coordinateStart.length) {
+                coordinateStart = Arrays.copyOf(coordinateStart, coordinateStart.length * 2);
+            }
+            coordinateStart[ringCount] = coordinates.size() / 2;
+            for (Coordinate c : coords) {
+                coordinates.add(c.getX());
+                coordinates.add(c.getY());
+            }
+            ringCount++;
+            coordinateStart[ringCount] = coordinates.size() / 2;
+            ringStart[polygonCount] = ringCount;
+        }
+
+        PackedBuildingSnapshot build() {
+            return new PackedBuildingSnapshot(this);
+        }
+    }
+}
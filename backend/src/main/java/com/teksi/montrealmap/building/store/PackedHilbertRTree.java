@@ -0,0 +1,238 @@
+package com.teksi.montrealmap.building.store;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Static R-tree packed bottom-up after sorting items along a Hilbert curve
+ * (the Flatbush layout). Node boxes live in one off-heap buffer, four doubles
+ * per node, leaves first and the root last.
+ */
+final class PackedHilbertRTree {
+
+    private static final int NODE_SIZE = 16;
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final int numItems;
+    private final DoubleBuffer boxes;
+    // leaf slot -> item index; internal slot -> first child slot
+    private final int[] indices;
+    // exclusive end slot of each level, leaves first
+    private final int[] levelBounds;
+
+    private PackedHilbertRTree(int numItems, DoubleBuffer boxes, int[] indices, int[] levelBounds) {
+        this.numItems = numItems;
+        this.boxes = boxes;
+        this.indices = indices;
+        this.levelBounds = levelBounds;
+    }
+
+    /**
+     * Writes the ids of items whose box intersects the query box into
+     * {@code out} (grown when needed) and returns the buffer; the hit count is
+     * stored in {@code count[0]}.
+     */
+    int[] search(double minX, double minY, double maxX, double maxY, int[] out, int[] count) {
+        int found = 0;
+        if (numItems == 0) {
+            count[0] = 0;
+            return out;
+        }
+
+        int[] stack = new int[levelBounds.length * NODE_SIZE];
+        int stackSize = 0;
+        int node = levelBounds[levelBounds.length - 1] - 1;
+
+        while (true) {
+            int end = Math.min(node + NODE_SIZE, upperBound(node));
+            boolean leafLevel = node < numItems;
+
+            for (int slot = node; slot < end; slot++) {
+                int b = slot * 4;
+                if (maxX < boxes.get(b) || maxY < boxes.get(b + 1)
+                        || minX > boxes.get(b + 2) || minY > boxes.get(b + 3)) {
+                    continue;
+                }
+                if (leafLevel) {
+                    if (found == out.length) out = Arrays.copyOf(out, out.length * 2);
+                    out[found++] = indices[slot];
+                } else {
+                    if (stackSize == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[stackSize++] = indices[slot];
+                }
+            }
+
+            if (stackSize == 0) break;
+            node = stack[--stackSize];
+        }
+
+        count[0] = found;
+        return out;
+    }
+
+    private int upperBound(int slot) {
+        for (int bound : levelBounds) {
+            if (bound > slot) return bound;
+        }
+        return levelBounds[levelBounds.length - 1];
+    }
+
+    static final class Builder {
+
+        private double[] itemBoxes;
+        private int[] itemIds;
+        private int numItems;
+
+        Builder(int expectedItems) {
+            itemBoxes = new double[Math.max(4, expectedItems * 4)];
+            itemIds = new int[Math.max(1, expectedItems)];
+        }
+
+        void add(int itemId, double minX, double minY, double maxX, double maxY) {
+            if (numItems == itemIds.length) {
+                itemBoxes = Arrays.copyOf(itemBoxes, itemBoxes.length * 2);
+                itemIds = Arrays.copyOf(itemIds, itemIds.length * 2);
+            }
+            itemIds[numItems] = itemId;
+            int b = numItems * 4;
+            itemBoxes[b] = minX;
+            itemBoxes[b + 1] = minY;
+            itemBoxes[b + 2] = maxX;
+            itemBoxes[b + 3] = maxY;
+            numItems++;
+        }
+
+        PackedHilbertRTree build() {
+            int n = numItems;
+            int numNodes = n;
+            int[] bounds = new int[32];
+            int levels = 0;
+            bounds[levels++] = n;
+            do {
+                n = (n + NODE_SIZE - 1) / NODE_SIZE;
+                numNodes += n;
+                bounds[levels++] = numNodes;
+            } while (n > 1);
+            int[] levelBounds = Arrays.copyOf(bounds, levels);
+
+            DoubleBuffer boxes = OffHeapDoubles.allocate(Math.max(1, numNodes) * 4);
+            int[] indices = new int[Math.max(1, numNodes)];
+
+            if (numItems > 0) {
+                writeLeavesInHilbertOrder(boxes, indices);
+                writeParents(boxes, indices, levelBounds);
+            }
+
+            itemBoxes = null;
+            itemIds = null;
+            return new PackedHilbertRTree(numItems, boxes.asReadOnlyBuffer(), indices, levelBounds);
+        }
+
+        private void writeLeavesInHilbertOrder(DoubleBuffer boxes, int[] indices) {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numItems; i++) {
+                int b = i * 4;
+                minX = Math.min(minX, itemBoxes[b]);
+                minY = Math.min(minY, itemBoxes[b + 1]);
+                maxX = Math.max(maxX, itemBoxes[b + 2]);
+                maxY = Math.max(maxY, itemBoxes[b + 3]);
+            }
+            double width = Math.max(maxX - minX, Double.MIN_VALUE);
+            double height = Math.max(maxY - minY, Double.MIN_VALUE);
+
+            // hilbert value in the high bits, builder position in the low 31 bits
+            long[] keys = new long[numItems];
+            for (int i = 0; i < numItems; i++) {
+                int b = i * 4;
+                int x = (int) (HILBERT_MAX * ((itemBoxes[b] + itemBoxes[b + 2]) / 2 - minX) / width);
+                int y = (int) (HILBERT_MAX * ((itemBoxes[b + 1] + itemBoxes[b + 3]) / 2 - minY) / height);
+                keys[i] = (hilbert(x, y) & 0xffffffffL) << 31 | i;
+            }
+            Arrays.sort(keys);
+
+            for (int slot = 0; slot < numItems; slot++) {
+                int position = (int) (keys[slot] & Integer.MAX_VALUE);
+                int b = position * 4;
+                boxes.put(slot * 4, itemBoxes[b]);
+                boxes.put(slot * 4 + 1, itemBoxes[b + 1]);
+                boxes.put(slot * 4 + 2, itemBoxes[b + 2]);
+                boxes.put(slot * 4 + 3, itemBoxes[b + 3]);
+                indices[slot] = itemIds[position];
+            }
+        }
+
+        private static void writeParents(DoubleBuffer boxes, int[] indices, int[] levelBounds) {
+            int parent = levelBounds[0];
+            for (int level = 0; level < levelBounds.length - 1; level++) {
+                int child = level == 0 ? 0 : levelBounds[level - 1];
+                int end = levelBounds[level];
+                while (child < end) {
+                    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                    int first = child;
+                    for (int j = 0; j < NODE_SIZE && child < end; j++, child++) {
+                        minX = Math.min(minX, boxes.get(child * 4));
+                        minY = Math.min(minY, boxes.get(child * 4 + 1));
+                        maxX = Math.max(maxX, boxes.get(child * 4 + 2));
+                        maxY = Math.max(maxY, boxes.get(child * 4 + 3));
+                    }
+                    boxes.put(parent * 4, minX);
+                    boxes.put(parent * 4 + 1, minY);
+                    boxes.put(parent * 4 + 2, maxX);
+                    boxes.put(parent * 4 + 3, maxY);
+                    indices[parent] = first;
+                    parent++;
+                }
+            }
+        }
+
+        // Hilbert curve index of (x, y) on a 2^16 grid, from "Fast Hilbert curve
+        // generation, sorting, and range queries" (rawrunprotected.com)
+        private static int hilbert(int x, int y) {
+            int a = x ^ y;
+            int b = 0xFFFF ^ a;
+            int c = 0xFFFF ^ (x | y);
+            int d = x & (y ^ 0xFFFF);
+
+            int A = a | (b >>> 1);
+            int B = (a >>> 1) ^ a;
+            int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+            int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+            a = A; b = B; c = C; d = D;
+            A = (a & (a >>> 2)) ^ (b & (b >>> 2));
+            B = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+            C ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+            D ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+            a = A; b = B; c = C; d = D;
+            A = (a & (a >>> 4)) ^ (b & (b >>> 4));
+            B = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+            C ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+            D ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+            a = A; b = B; c = C; d = D;
+            C ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+            D ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+            a = C ^ (C >>> 1);
+            b = D ^ (D >>> 1);
+
+            int i0 = x ^ y;
+            int i1 = b | (0xFFFF ^ (i0 | a));
+
+            i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+            i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+            i0 = (i0 | (i0 << 2)) & 0x33333333;
+            i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+            i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+            i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+            i1 = (i1 | (i1 << 2)) & 0x33333333;
+            i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+            return (i1 << 1) | i0;
+        }
+    }
+}
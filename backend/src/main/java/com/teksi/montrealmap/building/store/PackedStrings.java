@@ -0,0 +1,69 @@
+package com.teksi.montrealmap.building.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * High-cardinality strings (ids, addresses) stored as UTF-8 in one off-heap
+ * buffer, so millions of values cost the GC nothing to trace.
+ */
+final class PackedStrings {
+
+    private final ByteBuffer bytes;
+    private final int[] offsets;
+    private final BitSet nulls;
+
+    private PackedStrings(ByteBuffer bytes, int[] offsets, BitSet nulls) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.nulls = nulls;
+    }
+
+    String get(int index) {
+        if (nulls.get(index)) return null;
+        int start = offsets[index];
+        byte[] utf8 = new byte[offsets[index + 1] - start];
+        bytes.get(start, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static final class Builder {
+
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 16);
+        private int[] offsets = new int[1024];
+        private final BitSet nulls = new BitSet();
+        private int size;
+
+        void add(String value) {
+            if (size + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            if (value == null) {
+                nulls.set(size);
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                ensureRemaining(utf8.length);
+                bytes.put(utf8);
+            }
+            offsets[++size] = bytes.position();
+        }
+
+        private void ensureRemaining(int needed) {
+            if (bytes.remaining() >= needed) return;
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(bytes.capacity() * 2, bytes.position() + needed));
+            bytes.flip();
+            grown.put(bytes);
+            bytes = grown;
+        }
+
+        PackedStrings build() {
+            ByteBuffer exact = ByteBuffer.allocateDirect(Math.max(1, bytes.position()));
+            bytes.flip();
+            exact.put(bytes);
+            exact.flip();
+            return new PackedStrings(exact.asReadOnlyBuffer(), Arrays.copyOf(offsets, size + 1), nulls);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.teksi.montrealmap.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties("montreal.compression")
+public record CompressionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1KB") DataSize minSize,
+        @DefaultValue("6") int level
+) {}
@@ -0,0 +1,78 @@
+package com.teksi.montrealmap.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings the API can send, in order of preference when the client
+ * accepts several with the same quality.
+ */
+public enum ContentEncoding {
+
+    GZIP("gzip") {
+        @Override
+        OutputStream wrap(OutputStream out, int level, boolean syncFlush) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE, syncFlush) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+    },
+
+    // HTTP "deflate" is the zlib format, which is what DeflaterOutputStream writes
+    DEFLATE("deflate") {
+        @Override
+        OutputStream wrap(OutputStream out, int level, boolean syncFlush) {
+            return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE, syncFlush) {
+                // a Deflater passed in is not ended on close, which would hold its native memory until GC
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public static Optional<ContentEncoding> fromToken(String token) {
+        return Arrays.stream(values())
+                .filter(encoding -> encoding.token.equalsIgnoreCase(token))
+                .findFirst();
+    }
+
+    public byte[] compress(byte[] data, int level) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 8));
+        try (OutputStream out = wrap(buffer, level, false)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    // with syncFlush, flush() sends all data written so far instead of what the compressor chose to emit
+    abstract OutputStream wrap(OutputStream out, int level, boolean syncFlush) throws IOException;
+}
@@ -0,0 +1,120 @@
+package com.teksi.montrealmap.cache;
+
+import com.teksi.montrealmap.load.Cancellation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution: while a computation for a key is running, identical
+ * calls wait for it and share its result instead of running their own.
+ * Nothing is kept once the computation finishes; this is not a cache.
+ * <p>
+ * A shared computation runs with its own {@link Cancellation}, cancelled only
+ * once every request waiting for it has been cancelled; a caller whose own
+ * request is cancelled stops waiting right away. Its deadline is the latest of
+ * the requests that joined it (none if one of them has none), so its statements
+ * still get a query timeout from {@code CancellableDataSource}; statements
+ * started before a later request joined keep the timeout they started with.
+ */
+@Component
+public class RequestCoalescer {
+
+    private record FlightKey(String operation, Object key) {}
+
+    private static final class Flight {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final Cancellation cancellation;
+        final AtomicInteger interested = new AtomicInteger();
+
+        Flight(Cancellation caller) {
+            cancellation = Cancellation.withDeadlineOf(caller);
+        }
+
+        Cancellation.Registration join(Cancellation caller) {
+            cancellation.extendDeadline(caller);
+            interested.incrementAndGet();
+            return caller.onCancel(() -> {
+                if (interested.decrementAndGet() == 0) cancellation.cancel(Cancellation.Reason.ABANDONED);
+            });
+        }
+    }
+
+    private final Map<FlightKey, Flight> inFlight = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("montreal.coalescing.in.flight", Tags.empty(), inFlight);
+    }
+
+    /**
+     * Runs {@code computation}, or joins the identical one already running.
+     * {@code key} must implement value equality over the normalized request
+     * parameters.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String operation, Object key, Supplier<T> computation) {
+        Cancellation caller = Cancellation.current();
+        FlightKey flightKey = new FlightKey(operation, key);
+        Flight mine = new Flight(caller);
+        Flight running = inFlight.putIfAbsent(flightKey, mine);
+
+        // a flight everyone has left is being cancelled; start a new one rather than share its failure
+        if (running != null && running.cancellation.isCancelled() && inFlight.replace(flightKey, running, mine)) {
+            running = null;
+        }
+
+        if (running != null) {
+            counter(operation, "coalesced").increment();
+            try (Cancellation.Registration ignored = running.join(caller)) {
+                return (T) await(running, caller);
+            }
+        }
+
+        counter(operation, "executed").increment();
+        try (Cancellation.Registration ignored = mine.join(caller);
+             Cancellation.Registration bound = mine.cancellation.bind()) {
+            T result = computation.get();
+            mine.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    private static Object await(Flight running, Cancellation caller) {
+        CompletableFuture<Object> callerCancelled = new CompletableFuture<>();
+        try (Cancellation.Registration ignored = caller.onCancel(() -> callerCancelled.complete(null))) {
+            CompletableFuture.anyOf(running.result, callerCancelled).exceptionally(e -> null).join();
+        }
+        if (!running.result.isDone()) caller.throwIfCancelled("coalesced");
+
+        try {
+            return running.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private Counter counter(String operation, String outcome) {
+        return Counter.builder("montreal.coalescing.requests")
+                .description("Service calls that ran a computation (executed) or joined an identical one in flight (coalesced)")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
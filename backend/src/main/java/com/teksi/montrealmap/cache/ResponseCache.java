@@ -0,0 +1,188 @@
+package com.teksi.montrealmap.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, size-bounded cache of serialized responses (with their
+ * compressed variants) for repeated geometry requests.
+ * <p>
+ * A response is only admitted the second time its key is requested within the
+ * recent-key window, so one-off requests (tile warming, a user panning through
+ * new areas) do not push hot responses out. Entries expire after
+ * {@code montreal.response-cache.ttl} and can be dropped by operation prefix
+ * (and area, for {@link SpatialKey}s) after a data load. A response computed
+ * while an invalidation ran is not admitted, since it may predate the change.
+ * <p>
+ * An entry counts toward {@code montreal.response-cache.max-size} with its
+ * compressed variants, re-weighed as each is added.
+ */
+@Component
+public class ResponseCache {
+
+    private static final int MAX_RECENT_KEYS = 10_000;
+
+    private record CacheKey(String operation, Object key) {}
+
+    private static final class Entry {
+        final SerializedResponse response;
+        final long expiresAt;
+        // bytes counted in sizeBytes for this entry
+        long charged;
+
+        Entry(SerializedResponse response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final ResponseCacheProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // guarded by this
+    private final LinkedHashMap<CacheKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<CacheKey, Boolean> recentKeys = new LinkedHashMap<>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Boolean> eldest) {
+            return size() > MAX_RECENT_KEYS;
+        }
+    };
+    private long sizeBytes;
+    private long generation;
+
+    public ResponseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("montreal.response.cache.size", this, ResponseCache::sizeBytes)
+                .description("Bytes of cached responses, with their compressed variants")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached response for {@code key}, or loads it. {@code key}
+     * must implement value equality over the normalized request parameters.
+     */
+    public SerializedResponse get(String operation, Object key, Supplier<SerializedResponse> loader) {
+        if (!properties.enabled()) return loader.get();
+
+        CacheKey cacheKey = new CacheKey(operation, key);
+        SerializedResponse cached = lookup(cacheKey);
+        if (cached != null) {
+            counter(operation, "hit").increment();
+            return cached;
+        }
+
+        counter(operation, "miss").increment();
+        long loadGeneration = generation();
+        SerializedResponse loaded = loader.get();
+        admit(cacheKey, loaded, loadGeneration);
+        return loaded;
+    }
+
+    /**
+     * Drops the entries of every operation starting with {@code operationPrefix},
+     * e.g. {@code "buildings."} after a building data load.
+     */
+    public void invalidate(String operationPrefix) {
+        invalidate(operationPrefix, null);
+    }
+
+    /**
+     * Drops the entries of every operation starting with {@code operationPrefix}
+     * whose {@link SpatialKey} bounds intersect {@code area}, and those whose key
+     * has no bounds. A null {@code area} drops them all.
+     */
+    public synchronized void invalidate(String operationPrefix, @Nullable Envelope area) {
+        generation++;
+        Iterator<Map.Entry<CacheKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CacheKey, Entry> entry = it.next();
+            if (entry.getKey().operation().startsWith(operationPrefix) && affects(entry.getKey().key(), area)) {
+                sizeBytes -= entry.getValue().charged;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    private static boolean affects(Object key, @Nullable Envelope area) {
+        return area == null || !(key instanceof SpatialKey spatial) || spatial.bounds().intersects(area);
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    private synchronized SerializedResponse lookup(CacheKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(key);
+            sizeBytes -= entry.charged;
+            return null;
+        }
+        return entry.response;
+    }
+
+    private synchronized void admit(CacheKey key, SerializedResponse response, long loadGeneration) {
+        if (generation != loadGeneration) return;
+
+        long size = response.json().length;
+        long maxSize = properties.maxSize().toBytes();
+        // a single response may not take more than an eighth of the cache
+        if (size > maxSize / 8) return;
+
+        if (recentKeys.remove(key) == null) {
+            recentKeys.put(key, Boolean.TRUE);
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(response, System.nanoTime() + properties.ttl().toNanos()));
+        if (previous != null) sizeBytes -= previous.charged;
+        response.onEncoded(() -> reweigh(key, response));
+        reweigh(key, response);
+    }
+
+    // idempotent, so a variant added while the entry was being admitted is not counted twice
+    private synchronized void reweigh(CacheKey key, SerializedResponse response) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.response != response) return;
+
+        long size = response.sizeBytes();
+        sizeBytes += size - entry.charged;
+        entry.charged = size;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (sizeBytes > properties.maxSize().toBytes() && eldest.hasNext()) {
+            sizeBytes -= eldest.next().charged;
+            eldest.remove();
+        }
+    }
+
+    private Counter counter(String operation, String result) {
+        return Counter.builder("montreal.response.cache.requests")
+                .description("Cacheable requests answered from the response cache (hit) or computed (miss)")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
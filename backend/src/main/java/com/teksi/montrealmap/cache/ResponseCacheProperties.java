@@ -0,0 +1,14 @@
+package com.teksi.montrealmap.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.response-cache")
+public record ResponseCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("64MB") DataSize maxSize,
+        @DefaultValue("60s") Duration ttl
+) {}
@@ -0,0 +1,150 @@
+package com.teksi.montrealmap.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sends a {@link SerializedResponse} in the best encoding the client accepts.
+ * Compressed bytes are stored on the response, so a response shared through
+ * {@link ResponseCache} is compressed once per encoding, not once per request.
+ */
+@Component
+public class ResponseCompressor {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final CompressionProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public ResponseCompressor(CompressionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ResponseEntity<byte[]> respond(SerializedResponse response, @Nullable String acceptEncoding) {
+        if (!properties.enabled()) return response.toResponseEntity();
+
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        Optional<ContentEncoding> encoding = response.json().length < properties.minSize().toBytes()
+                ? Optional.empty()
+                : negotiate(acceptEncoding);
+        if (encoding.isEmpty()) return ok.body(response.json());
+
+        return ok.header(HttpHeaders.CONTENT_ENCODING, encoding.get().token())
+                .body(response.encoded(encoding.get(), this::compress));
+    }
+
+    /**
+     * Opens the body of a streamed response in the best encoding the client
+     * accepts. Each flush of the returned stream sends everything written so far.
+     */
+    public StreamedBody stream(HttpServletResponse response, @Nullable String acceptEncoding) throws IOException {
+        if (!properties.enabled()) return new StreamedBody(response.getOutputStream(), null, properties.level());
+
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        Optional<ContentEncoding> encoding = negotiate(acceptEncoding);
+        if (encoding.isEmpty()) return new StreamedBody(response.getOutputStream(), null, properties.level());
+
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding.get().token());
+        return new StreamedBody(response.getOutputStream(), encoding.get(), properties.level());
+    }
+
+    private byte[] compress(ContentEncoding encoding, byte[] json) {
+        long cpuStart = cpuTimeNanos();
+        byte[] compressed = encoding.compress(json, properties.level());
+        long cpuEnd = cpuTimeNanos();
+
+        // without thread CPU time the sample is skipped: wall time would overstate it under load
+        if (cpuStart >= 0 && cpuEnd >= 0) {
+            Counter.builder("montreal.compression.cpu")
+                    .description("CPU time spent compressing response bodies")
+                    .baseUnit("seconds")
+                    .tag("encoding", encoding.token())
+                    .register(meterRegistry)
+                    .increment((cpuEnd - cpuStart) / 1e9);
+        }
+        bytesCounter(encoding, "in").increment(json.length);
+        bytesCounter(encoding, "out").increment(compressed.length);
+        return compressed;
+    }
+
+    // -1 when thread CPU time is unsupported or disabled
+    private static long cpuTimeNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    private Counter bytesCounter(ContentEncoding encoding, String direction) {
+        return Counter.builder("montreal.compression.bytes")
+                .description("Response bytes before (in) and after (out) compression")
+                .baseUnit("bytes")
+                .tag("encoding", encoding.token())
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Picks the supported encoding with the highest quality in an
+     * {@code Accept-Encoding} header ({@code gzip;q=0.8, deflate, *;q=0}),
+     * or empty when the body should be sent as is.
+     */
+    static Optional<ContentEncoding> negotiate(@Nullable String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) return Optional.empty();
+
+        Map<ContentEncoding, Double> qualities = new EnumMap<>(ContentEncoding.class);
+        Double wildcard = null;
+
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String token = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(params);
+
+            if (token.equals("*")) {
+                wildcard = quality;
+            } else {
+                ContentEncoding.fromToken(token).ifPresent(encoding -> qualities.put(encoding, quality));
+            }
+        }
+
+        ContentEncoding best = null;
+        double bestQuality = 0;
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            double quality = qualities.getOrDefault(encoding, wildcard == null ? 0 : wildcard);
+            if (quality > bestQuality) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
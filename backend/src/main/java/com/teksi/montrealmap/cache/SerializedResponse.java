@@ -0,0 +1,67 @@
+package com.teksi.montrealmap.cache;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * A response body already serialized to JSON, so it can be shared between
+ * requests without serializing it again. Compressed variants are produced on
+ * first use and kept with the body.
+ */
+public final class SerializedResponse {
+
+    private final byte[] json;
+    private final Map<ContentEncoding, byte[]> encoded = new ConcurrentHashMap<>(2);
+    private volatile @Nullable Runnable onEncoded;
+
+    private SerializedResponse(byte[] json) {
+        this.json = json;
+    }
+
+    public static SerializedResponse of(byte[] json) {
+        return new SerializedResponse(json);
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    /**
+     * Bytes held: the body and the compressed variants produced so far.
+     */
+    public long sizeBytes() {
+        long size = json.length;
+        for (byte[] variant : encoded.values()) size += variant.length;
+        return size;
+    }
+
+    // lets ResponseCache weigh the variants compressed after it admitted the body
+    void onEncoded(@Nullable Runnable listener) {
+        this.onEncoded = listener;
+    }
+
+    /**
+     * The body in {@code encoding}, compressed by {@code encoder} on the first
+     * call only; concurrent first callers wait for that one compression.
+     */
+    public byte[] encoded(ContentEncoding encoding, BiFunction<ContentEncoding, byte[], byte[]> encoder) {
+        byte[] existing = encoded.get(encoding);
+        if (existing != null) return existing;
+
+        byte[] variant = encoded.computeIfAbsent(encoding, e -> encoder.apply(e, json));
+        Runnable listener = onEncoded;
+        if (listener != null) listener.run();
+        return variant;
+    }
+
+    public ResponseEntity<byte[]> toResponseEntity() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json);
+    }
+}
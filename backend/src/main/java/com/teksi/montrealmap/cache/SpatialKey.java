@@ -0,0 +1,12 @@
+package com.teksi.montrealmap.cache;
+
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * A {@link ResponseCache} key for a response that only depends on the data
+ * within {@link #bounds()} (WGS84), so a data change elsewhere leaves it cached.
+ */
+public interface SpatialKey {
+
+    Envelope bounds();
+}
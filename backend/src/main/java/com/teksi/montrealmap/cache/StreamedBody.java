@@ -0,0 +1,85 @@
+package com.teksi.montrealmap.cache;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The body of a streamed response, compressed or not. {@link #close()} ends
+ * it; {@link #abort()} gives up on it without sending another byte, so that a
+ * response failing halfway cannot reach the client looking complete.
+ */
+public final class StreamedBody extends OutputStream {
+
+    private final Sink sink;
+    private final OutputStream out;
+
+    StreamedBody(OutputStream response, @Nullable ContentEncoding encoding, int level) throws IOException {
+        this.sink = new Sink(response);
+        this.out = encoding != null ? encoding.wrap(sink, level, true) : sink;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Releases the compressor without writing its trailer, and leaves the
+     * response open for the container to reset.
+     */
+    public void abort() {
+        sink.detached = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // nothing reaches the response any more
+        }
+    }
+
+    private static final class Sink extends OutputStream {
+
+        private final OutputStream response;
+        private boolean detached;
+
+        Sink(OutputStream response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!detached) response.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!detached) response.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!detached) response.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!detached) response.close();
+        }
+    }
+}
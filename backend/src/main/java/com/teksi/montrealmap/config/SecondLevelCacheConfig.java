@@ -0,0 +1,51 @@
+package com.teksi.montrealmap.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.teksi.montrealmap.building.entity.Building;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.Properties;
+
+/**
+ * Hibernate second-level cache for the read-only {@link Building} rows served
+ * by id, in a Caffeine JCache region bounded to {@code max-entries} whose
+ * entries expire after {@code ttl}. Building data changes evict the region
+ * through {@link SecondLevelCacheInvalidator}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    CacheManager secondLevelCacheManager(SecondLevelCacheProperties properties) {
+        CachingProvider provider = new CaffeineCachingProvider();
+        CacheManager cacheManager = provider.getCacheManager(
+                provider.getDefaultURI(), SecondLevelCacheConfig.class.getClassLoader(), new Properties());
+
+        CaffeineConfiguration<Object, Object> region = new CaffeineConfiguration<>();
+        region.setMaximumSize(OptionalLong.of(properties.maxEntries()));
+        region.setExpireAfterWrite(OptionalLong.of(properties.ttl().toNanos()));
+        cacheManager.createCache(Building.CACHE_REGION, region);
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer secondLevelCache(SecondLevelCacheProperties properties, CacheManager secondLevelCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, properties.enabled());
+            if (!properties.enabled()) return;
+
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            // every region is configured above; an unknown one would otherwise be created unbounded
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package com.teksi.montrealmap.config;
+
+import com.teksi.montrealmap.building.entity.Building;
+import com.teksi.montrealmap.sync.DataChangedEvent;
+import com.teksi.montrealmap.sync.DataLayer;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class SecondLevelCacheInvalidator {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    // before the response cache is invalidated, so it is not refilled from stale entities
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        if (event.layer() == DataLayer.BUILDINGS) {
+            entityManagerFactory.getCache().evict(Building.class);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.teksi.montrealmap.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.second-level-cache")
+public record SecondLevelCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("50000") long maxEntries,
+        @DefaultValue("10m") Duration ttl
+) {
+}
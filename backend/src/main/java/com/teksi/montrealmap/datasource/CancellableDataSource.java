@@ -0,0 +1,124 @@
+package com.teksi.montrealmap.datasource;
+
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.CancelledException;
+import com.teksi.montrealmap.profiling.GeometryProfile;
+import com.teksi.montrealmap.profiling.QueryEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Ties statement execution to the {@link Cancellation#current() current}
+ * request: a statement is not started for a cancelled request, gets the time
+ * left until the deadline as its query timeout, and is cancelled on the server
+ * ({@link Statement#cancel()}) when the request is cancelled while it runs.
+ * Each execution is also recorded as a {@link QueryEvent}.
+ */
+public class CancellableDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeUpdate", "executeLargeBatch");
+
+    private final Counter cancelledStatements;
+
+    public CancellableDataSource(DataSource target, MeterRegistry meterRegistry) {
+        super(target);
+        this.cancelledStatements = Counter.builder("montreal.cancellation.statements")
+                .description("JDBC statements cancelled while running because their request was cancelled")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection proxy(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ConnectionProxy.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "getTargetConnection" -> target;
+                    default -> {
+                        Object result = invoke(target, method, args);
+                        yield result instanceof Statement statement ? proxy(statement, preparedSql(method, args)) : result;
+                    }
+                });
+    }
+
+    private static @Nullable String preparedSql(Method method, Object[] args) {
+        return method.getName().startsWith("prepare") && args != null && args.length > 0 && args[0] instanceof String sql
+                ? sql
+                : null;
+    }
+
+    private Statement proxy(Statement target, @Nullable String preparedSql) {
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> EXECUTE_METHODS.contains(method.getName())
+                        ? execute(target, preparedSql, method, args)
+                        : invoke(target, method, args));
+    }
+
+    private Object execute(Statement statement, @Nullable String preparedSql, Method method, Object[] args) throws Throwable {
+        Cancellation cancellation = Cancellation.current();
+        cancellation.throwIfCancelled("query");
+
+        Duration remaining = cancellation.remaining();
+        if (remaining != null && statement.getQueryTimeout() == 0) {
+            statement.setQueryTimeout((int) Math.max(1, (remaining.toMillis() + 999) / 1000));
+        }
+
+        QueryEvent event = GeometryProfile.beginQuery();
+        try (Cancellation.Registration ignored = cancellation.onCancel(() -> cancel(statement))) {
+            return invoke(statement, method, args);
+        } catch (SQLException e) {
+            // a query timeout or our own cancel
+            if (!cancellation.isCancelled()) throw e;
+            cancelledStatements.increment();
+            throw new CancelledException(cancellation.reason(), "query", e);
+        } finally {
+            // plain statements get their SQL with the execute call
+            GeometryProfile.endQuery(event, preparedSql != null ? preparedSql
+                    : args != null && args.length > 0 && args[0] instanceof String sql ? sql : null);
+        }
+    }
+
+    private static void cancel(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {
+            // the statement finished or its connection is gone; nothing left to stop
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.teksi.montrealmap.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.flyway.autoconfigure.FlywayDataSource;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes connections by transaction type. The application-wide {@code DataSource}
+ * is a {@link LazyConnectionDataSourceProxy}, which only fetches a physical
+ * connection at the first statement, once the transaction has marked it
+ * read-only or not: read-only transactions get a replica connection from
+ * {@link ReplicaDataSource}, everything else (writes, Flyway, work outside a
+ * transaction) gets one from the primary pool. On top, {@link CancellableDataSource}
+ * stops statements of cancelled requests.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(StringUtils.hasText(properties.getName()) ? properties.getName() : "primary");
+        return dataSource;
+    }
+
+    @Bean
+    ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                        DataSourceProperties dataSourceProperties,
+                                        DataSourceRoutingProperties properties,
+                                        MeterRegistry meterRegistry) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < properties.replicas().size(); i++) {
+            DataSourceRoutingProperties.Replica replica = properties.replicas().get(i);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (i + 1));
+            pool.setJdbcUrl(replica.url());
+            pool.setUsername(replica.username() != null ? replica.username() : dataSourceProperties.determineUsername());
+            pool.setPassword(replica.password() != null ? replica.password() : dataSourceProperties.determinePassword());
+            pool.setMaximumPoolSize(replica.maximumPoolSize());
+            pool.setReadOnly(true);
+            pool.setConnectionTimeout(primaryDataSource.getConnectionTimeout());
+            pool.setValidationTimeout(primaryDataSource.getValidationTimeout());
+            // an unreachable replica must not fail startup; it stays out of rotation instead
+            pool.setInitializationFailTimeout(-1);
+            pool.setMetricRegistry(meterRegistry);
+            pools.add(pool);
+        }
+        return new ReplicaDataSource(primaryDataSource, pools, properties.maxReplicaLag(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource,
+                          MeterRegistry meterRegistry) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(primaryDataSource);
+        routing.setReadOnlyDataSource(replicaDataSource);
+        // known up front, so no connection is needed to find them out
+        routing.setDefaultAutoCommit(primaryDataSource.isAutoCommit());
+        routing.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return new CancellableDataSource(routing, meterRegistry);
+    }
+}
@@ -0,0 +1,29 @@
+package com.teksi.montrealmap.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas for {@code @Transactional(readOnly = true)} work. Without any
+ * replica, every connection comes from the primary {@code spring.datasource}.
+ */
+@ConfigurationProperties("montreal.datasource")
+public record DataSourceRoutingProperties(
+        @DefaultValue List<Replica> replicas,
+        @DefaultValue("10s") Duration maxReplicaLag,
+        @DefaultValue("5s") Duration lagCheckInterval
+) {
+
+    /**
+     * Username and password default to those of the primary.
+     */
+    public record Replica(
+            String url,
+            String username,
+            String password,
+            @DefaultValue("10") int maximumPoolSize
+    ) {}
+}
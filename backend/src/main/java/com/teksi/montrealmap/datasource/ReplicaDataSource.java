@@ -0,0 +1,159 @@
+package com.teksi.montrealmap.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out connections from the read replicas, round-robin over those whose
+ * replication lag is within {@code montreal.datasource.max-replica-lag}. When no
+ * replica is usable (none configured, all lagging or unreachable), connections
+ * come from the primary instead.
+ * <p>
+ * Lag is measured by {@link #checkLag()}; a replica that fails to hand out a
+ * connection is skipped until the next check finds it healthy again.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // a standby that has replayed everything it received is caught up, however
+    // old its last replayed transaction is, but only while it is receiving: with
+    // its WAL receiver gone, nothing new arrives and the LSNs stay equal forever,
+    // so the lag is unknown (null). Without pg_read_all_stats the receiver's
+    // status reads as null, and a running receiver is taken as streaming.
+    private static final String LAG_SQL = """
+            select case
+                     when not pg_is_in_recovery() then 0
+                     when not exists (select 1 from pg_stat_wal_receiver where coalesce(status, 'streaming') = 'streaming') then null
+                     when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                     else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)
+                   end
+            """;
+
+    private static final int LAG_QUERY_TIMEOUT_SECONDS = 2;
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        final String name;
+        final HikariDataSource dataSource;
+        final Counter reads;
+        volatile boolean healthy;
+        volatile double lagSeconds = Double.NaN;
+
+        Replica(String name, HikariDataSource dataSource, Counter reads) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.reads = reads;
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final Counter primaryReads;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<HikariDataSource> replicaPools,
+                             Duration maxLag, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.primaryReads = readCounter(meterRegistry, "primary");
+        this.replicas = replicaPools.stream()
+                .map(pool -> new Replica(pool.getPoolName(), pool, readCounter(meterRegistry, pool.getPoolName())))
+                .toList();
+
+        for (Replica replica : replicas) {
+            Gauge.builder("montreal.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Replication lag of a read replica")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("montreal.datasource.reads")
+                .description("Read-only connections handed out, by the pool they came from")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return open(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return open(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection open(ConnectionOpener opener) throws SQLException {
+        int count = replicas.size();
+        if (count > 0) {
+            int start = Math.floorMod(next.getAndIncrement(), count);
+            for (int i = 0; i < count; i++) {
+                Replica replica = replicas.get((start + i) % count);
+                if (!replica.healthy) continue;
+                try {
+                    Connection connection = opener.open(replica.dataSource);
+                    replica.reads.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    replica.healthy = false;
+                    log.warn("Read replica {} unavailable, skipping it until the next lag check: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return opener.open(primary);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${montreal.datasource.lag-check-interval:5s}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(LAG_QUERY_TIMEOUT_SECONDS);
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    double lag = rs.getDouble(1);
+                    replica.lagSeconds = rs.wasNull() ? Double.POSITIVE_INFINITY : lag;
+                }
+                replica.healthy = replica.lagSeconds <= maxLag.toMillis() / 1000.0;
+            } catch (SQLException e) {
+                replica.lagSeconds = Double.NaN;
+                replica.healthy = false;
+            }
+
+            if (wasHealthy && !replica.healthy) {
+                log.warn("Read replica {} taken out of rotation (lag {} s)", replica.name, replica.lagSeconds);
+            } else if (!wasHealthy && replica.healthy) {
+                log.info("Read replica {} in rotation (lag {} s)", replica.name, replica.lagSeconds);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+}
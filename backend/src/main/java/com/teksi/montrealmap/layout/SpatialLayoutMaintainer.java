@@ -0,0 +1,102 @@
+package com.teksi.montrealmap.layout;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps {@code buildings} and {@code zonage} physically ordered by their Hilbert
+ * {@code sort_key} (see {@code V3__spatial_layout.sql}). Rows written since the
+ * last rewrite land wherever there is room, so the order decays; once the
+ * correlation between sort key and row position drops below
+ * {@code min-correlation}, the table is rewritten in key order with
+ * {@code recluster_by_sort_key}, which keeps serving reads while it copies.
+ * <p>
+ * Runs on every node, but only one rewrites a given table at a time.
+ */
+@Slf4j
+@Component
+public class SpatialLayoutMaintainer {
+
+    private static final List<String> TABLES = List.of("public.buildings", "public.zonage");
+
+    private static final String CORRELATION_SQL = """
+            select correlation
+            from pg_stats
+            where schemaname = ? and tablename = ? and attname = 'sort_key'
+            """;
+
+    private static final String RECLUSTER_SQL = "select recluster_by_sort_key(?::regclass, ?::interval)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SpatialLayoutProperties properties;
+    private final Map<String, Double> correlations = new ConcurrentHashMap<>();
+
+    public SpatialLayoutMaintainer(JdbcTemplate jdbcTemplate, SpatialLayoutProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+
+        for (String table : TABLES) {
+            Gauge.builder("montreal.spatial-layout.correlation", correlations, c -> c.getOrDefault(table, Double.NaN))
+                    .description("Correlation between the sort key and the physical row order at the last check (1 is fully ordered)")
+                    .tag("table", table)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Scheduled(cron = "${montreal.spatial-layout.cron:0 30 3 * * *}")
+    public void maintain() {
+        if (!properties.enabled()) return;
+        for (String table : TABLES) {
+            try {
+                maintain(table);
+            } catch (DataAccessException e) {
+                log.warn("Could not reorder {}, retrying at the next run: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    private void maintain(String table) {
+        // fresh statistics: ANALYZE only samples the table, which is cheap next to a rewrite
+        jdbcTemplate.execute("analyze " + table);
+        @Nullable Double correlation = correlation(table);
+        if (correlation == null) return;
+        correlations.put(table, correlation);
+        // a table in descending key order is just as clustered
+        if (Math.abs(correlation) >= properties.minCorrelation()) {
+            log.debug("{} is in sort key order (correlation {})", table, correlation);
+            return;
+        }
+
+        log.info("Reordering {} by sort key (correlation {} below {})", table, correlation, properties.minCorrelation());
+        long start = System.nanoTime();
+        Boolean reordered = jdbcTemplate.queryForObject(RECLUSTER_SQL, Boolean.class,
+                table, properties.lockTimeout().toMillis() + " milliseconds");
+        if (!Boolean.TRUE.equals(reordered)) {
+            log.info("{} is being reordered by another node", table);
+            return;
+        }
+
+        // recluster_by_sort_key analyzes the new table
+        @Nullable Double after = correlation(table);
+        if (after != null) correlations.put(table, after);
+        log.info("Reordered {} in {} ms (correlation now {})", table, (System.nanoTime() - start) / 1_000_000, after);
+    }
+
+    private @Nullable Double correlation(String table) {
+        String[] name = table.split("\\.");
+        List<Double> rows = jdbcTemplate.queryForList(CORRELATION_SQL, Double.class, name[0], name[1]);
+        // no statistics for an empty table
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
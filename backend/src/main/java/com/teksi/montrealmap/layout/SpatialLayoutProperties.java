@@ -0,0 +1,15 @@
+package com.teksi.montrealmap.layout;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.spatial-layout")
+public record SpatialLayoutProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0 30 3 * * *") String cron,
+        @DefaultValue("0.9") double minCorrelation,
+        @DefaultValue("5s") Duration lockTimeout
+) {
+}
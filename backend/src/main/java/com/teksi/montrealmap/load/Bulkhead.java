@@ -0,0 +1,21 @@
+package com.teksi.montrealmap.load;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits how many requests to the annotated handler (or every handler of the
+ * annotated controller) run at once, together with all other handlers of the
+ * same {@link EndpointClass}. Requests that cannot get in within
+ * {@code montreal.load-shedding.acquire-timeout} are rejected with {@code 429}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Bulkhead {
+
+    EndpointClass value();
+}
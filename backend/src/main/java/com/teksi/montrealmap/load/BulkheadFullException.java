@@ -0,0 +1,15 @@
+package com.teksi.montrealmap.load;
+
+public class BulkheadFullException extends RuntimeException {
+
+    private final EndpointClass endpointClass;
+
+    public BulkheadFullException(EndpointClass endpointClass) {
+        super("Too many concurrent " + endpointClass + " requests");
+        this.endpointClass = endpointClass;
+    }
+
+    public EndpointClass endpointClass() {
+        return endpointClass;
+    }
+}
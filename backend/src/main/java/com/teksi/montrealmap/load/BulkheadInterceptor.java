@@ -0,0 +1,76 @@
+package com.teksi.montrealmap.load;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces {@link Bulkhead} limits: one semaphore per {@link EndpointClass},
+ * held from handler entry until the response is complete.
+ */
+@Component
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = BulkheadInterceptor.class.getName() + ".permit";
+
+    private final LoadSheddingProperties properties;
+    private final Map<EndpointClass, Semaphore> permits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    public BulkheadInterceptor(LoadSheddingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            int limit = switch (endpointClass) {
+                case GEOMETRY -> properties.geometryConcurrency();
+                case LOOKUP -> properties.lookupConcurrency();
+            };
+            Semaphore semaphore = new Semaphore(limit);
+            permits.put(endpointClass, semaphore);
+
+            String tag = endpointClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("montreal.bulkhead.active", semaphore, s -> limit - s.availablePermits())
+                    .description("Requests currently running in a bulkhead")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            rejections.put(endpointClass, Counter.builder("montreal.bulkhead.rejected")
+                    .description("Requests rejected because their bulkhead was full")
+                    .tag("class", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws InterruptedException {
+        EndpointClass endpointClass = EndpointClass.of(handler);
+        if (endpointClass == null || !properties.enabled()) return true;
+
+        Semaphore semaphore = permits.get(endpointClass);
+        if (!semaphore.tryAcquire(properties.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+            rejections.get(endpointClass).increment();
+            throw new BulkheadFullException(endpointClass);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, semaphore);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                @Nullable Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Semaphore semaphore) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            semaphore.release();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.teksi.montrealmap.load;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cooperative cancellation of the work done for a request. The token of the
+ * request being served is bound to its thread ({@link #current()}); JDBC
+ * statements register to be cancelled with it, and longer computations check
+ * it between steps with {@link #throwIfCancelled(String)}.
+ * <p>
+ * Work not done for a request (background jobs) sees a token that is never
+ * cancelled.
+ */
+public final class Cancellation {
+
+    public enum Reason {
+        /** The endpoint's deadline passed. */
+        DEADLINE,
+        /** The client closed the connection. */
+        CLIENT_GONE,
+        /** Every request waiting for a shared computation was cancelled. */
+        ABANDONED
+    }
+
+    /**
+     * Undoes {@link #onCancel(Runnable)} or {@link #bind()}.
+     */
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Cancellation NONE = new Cancellation(0);
+    private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<>();
+
+    // System.nanoTime() based; 0 means no deadline
+    private volatile long deadline;
+    private volatile @Nullable Reason reason;
+    private final List<Runnable> listeners = new ArrayList<>(); // guarded by this
+
+    private Cancellation(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public static Cancellation withDeadline(Duration timeout) {
+        return new Cancellation(Math.max(1, System.nanoTime() + timeout.toNanos()));
+    }
+
+    public static Cancellation withoutDeadline() {
+        return new Cancellation(0);
+    }
+
+    /**
+     * A new token with the same deadline as {@code other}, for work shared by
+     * several requests; see {@link #extendDeadline(Cancellation)}.
+     */
+    public static Cancellation withDeadlineOf(Cancellation other) {
+        return new Cancellation(other.deadline);
+    }
+
+    public static Cancellation current() {
+        Cancellation current = CURRENT.get();
+        return current != null ? current : NONE;
+    }
+
+    /**
+     * Makes this the {@link #current()} token of the calling thread until the
+     * returned registration is closed.
+     */
+    public Registration bind() {
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        };
+    }
+
+    public boolean isCancelled() {
+        long deadline = this.deadline;
+        if (reason == null && deadline != 0 && System.nanoTime() - deadline > 0) {
+            cancel(Reason.DEADLINE);
+        }
+        return reason != null;
+    }
+
+    public @Nullable Reason reason() {
+        return isCancelled() ? reason : null;
+    }
+
+    /**
+     * Time left until the deadline, or {@code null} without one.
+     */
+    public @Nullable Duration remaining() {
+        long deadline = this.deadline;
+        if (deadline == 0) return null;
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * Moves the deadline to {@code other}'s when that is later, and drops it
+     * when {@code other} has none: work shared with another request must not
+     * stop before that request's deadline.
+     */
+    public synchronized void extendDeadline(Cancellation other) {
+        long theirs = other.deadline;
+        if (deadline != 0 && (theirs == 0 || theirs - deadline > 0)) deadline = theirs;
+    }
+
+    public void throwIfCancelled(String stage) {
+        if (isCancelled()) throw new CancelledException(reason, stage, null);
+    }
+
+    public void cancel(Reason reason) {
+        if (this == NONE) return;
+
+        List<Runnable> actions;
+        synchronized (this) {
+            if (this.reason != null) return;
+            this.reason = reason;
+            actions = List.copyOf(listeners);
+            listeners.clear();
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    /**
+     * Runs {@code action} when this token is cancelled, right away if it already is.
+     */
+    public Registration onCancel(Runnable action) {
+        if (this == NONE) return () -> {};
+
+        synchronized (this) {
+            if (reason == null) {
+                listeners.add(action);
+                return () -> {
+                    synchronized (this) {
+                        listeners.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> {};
+    }
+}
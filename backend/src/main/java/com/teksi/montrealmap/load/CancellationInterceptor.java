@@ -0,0 +1,51 @@
+package com.teksi.montrealmap.load;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Binds a {@link Cancellation} with the deadline of the handler's
+ * {@link EndpointClass} to the request thread, and has it watched until the
+ * request completes.
+ */
+@Component
+@RequiredArgsConstructor
+public class CancellationInterceptor implements HandlerInterceptor {
+
+    private static final String WATCH_ATTRIBUTE = CancellationInterceptor.class.getName() + ".watch";
+    private static final String BINDING_ATTRIBUTE = CancellationInterceptor.class.getName() + ".binding";
+
+    private final CancellationProperties properties;
+    private final CancellationWatchdog watchdog;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        EndpointClass endpointClass = EndpointClass.of(handler);
+        if (endpointClass == null || !properties.enabled()) return true;
+
+        Cancellation cancellation = Cancellation.withDeadline(properties.deadline(endpointClass));
+        ClientConnectionProbe probe = properties.detectDisconnect()
+                && request.getAttribute(ClientConnectionProbe.ATTRIBUTE) instanceof ClientConnectionProbe p ? p : null;
+
+        request.setAttribute(WATCH_ATTRIBUTE, watchdog.watch(cancellation, probe));
+        request.setAttribute(BINDING_ATTRIBUTE, cancellation.bind());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                @Nullable Exception ex) {
+        if (request.getAttribute(BINDING_ATTRIBUTE) instanceof Cancellation.Registration binding) {
+            request.removeAttribute(BINDING_ATTRIBUTE);
+            binding.close();
+        }
+        if (request.getAttribute(WATCH_ATTRIBUTE) instanceof CancellationWatchdog.Watch watch) {
+            request.removeAttribute(WATCH_ATTRIBUTE);
+            watch.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.teksi.montrealmap.load;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.cancellation")
+public record CancellationProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("true") boolean detectDisconnect,
+        @DefaultValue("15s") Duration geometryDeadline,
+        @DefaultValue("3s") Duration lookupDeadline,
+        @DefaultValue("100ms") Duration checkInterval
+) {
+
+    public Duration deadline(EndpointClass endpointClass) {
+        return switch (endpointClass) {
+            case GEOMETRY -> geometryDeadline;
+            case LOOKUP -> lookupDeadline;
+        };
+    }
+}
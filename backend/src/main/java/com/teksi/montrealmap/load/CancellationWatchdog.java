@@ -0,0 +1,87 @@
+package com.teksi.montrealmap.load;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels the tokens of requests in progress once their deadline passes or
+ * their client has gone away, every {@code montreal.cancellation.check-interval}.
+ * <p>
+ * The checks run on a thread of their own rather than the shared scheduler,
+ * where slow jobs (store refreshes, tile compaction, the nightly table rewrite)
+ * could hold every thread and leave deadlines unenforced.
+ */
+@Slf4j
+@Component
+public class CancellationWatchdog {
+
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cancellation-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CancellationWatchdog(CancellationProperties properties) {
+        if (!properties.enabled()) return;
+        long interval = properties.checkInterval().toNanos();
+        executor.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    public Watch watch(Cancellation cancellation, @Nullable ClientConnectionProbe probe) {
+        Watch watch = new Watch(cancellation, probe);
+        watches.add(watch);
+        return watch;
+    }
+
+    // an exception escaping here would stop the executor from running the checks again
+    void check() {
+        for (Watch watch : watches) {
+            try {
+                watch.check();
+            } catch (RuntimeException e) {
+                log.warn("Cancellation check failed", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public final class Watch implements AutoCloseable {
+
+        private final Cancellation cancellation;
+        private final @Nullable ClientConnectionProbe probe;
+        private boolean closed; // guarded by this
+
+        private Watch(Cancellation cancellation, @Nullable ClientConnectionProbe probe) {
+            this.cancellation = cancellation;
+            this.probe = probe;
+        }
+
+        // synchronized with close(): the probe reads from the request, which the
+        // server recycles once it is complete
+        private synchronized void check() {
+            if (closed || cancellation.isCancelled()) return;
+            if (probe != null && probe.isClosed()) {
+                cancellation.cancel(Cancellation.Reason.CLIENT_GONE);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+            watches.remove(this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.teksi.montrealmap.load;
+
+import org.jspecify.annotations.Nullable;
+
+public class CancelledException extends RuntimeException {
+
+    private final Cancellation.Reason reason;
+    private final String stage;
+
+    public CancelledException(Cancellation.Reason reason, String stage, @Nullable Throwable cause) {
+        super("Request cancelled (" + reason + ") at " + stage, cause);
+        this.reason = reason;
+        this.stage = stage;
+    }
+
+    public Cancellation.Reason reason() {
+        return reason;
+    }
+
+    /**
+     * Where the work stopped, e.g. {@code query} or {@code serialization}.
+     */
+    public String stage() {
+        return stage;
+    }
+}
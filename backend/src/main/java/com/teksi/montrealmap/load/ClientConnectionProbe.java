@@ -0,0 +1,13 @@
+package com.teksi.montrealmap.load;
+
+/**
+ * Tells whether the client of a request still in progress has closed its
+ * connection. Stored as a request attribute by the web server, when it can tell.
+ */
+@FunctionalInterface
+public interface ClientConnectionProbe {
+
+    String ATTRIBUTE = ClientConnectionProbe.class.getName();
+
+    boolean isClosed();
+}
@@ -0,0 +1,37 @@
+package com.teksi.montrealmap.load;
+
+import jakarta.servlet.ServletException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.ActionCode;
+
+import java.io.IOException;
+
+/**
+ * Gives requests without a body a {@link ClientConnectionProbe}. The Servlet API
+ * only reports a closed connection once a write fails; the probe instead asks
+ * Tomcat for a non-blocking read, which finds end-of-stream on a closed socket.
+ * <p>
+ * Any readable byte counts as closed, so an HTTP/1.1 client pipelining its next
+ * request would have the current one cancelled. Browsers do not pipeline.
+ */
+class ClientDisconnectValve extends ValveBase {
+
+    ClientDisconnectValve() {
+        super(true);
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+            request.setAttribute(ClientConnectionProbe.ATTRIBUTE, (ClientConnectionProbe) () -> {
+                coyoteRequest.action(ActionCode.AVAILABLE, Boolean.TRUE);
+                return coyoteRequest.getAvailable() > 0;
+            });
+        }
+        getNext().invoke(request, response);
+    }
+}
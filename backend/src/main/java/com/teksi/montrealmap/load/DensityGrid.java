@@ -0,0 +1,96 @@
+package com.teksi.montrealmap.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feature counts on a regular lng/lat grid. Estimates assume features are
+ * spread evenly within a cell.
+ */
+final class DensityGrid {
+
+    private final double cellSize;
+    private final long minCellX;
+    private final long minCellY;
+    private final int columns;
+    private final int rows;
+    private final long[] counts;
+
+    private DensityGrid(double cellSize, long minCellX, long minCellY, int columns, int rows, long[] counts) {
+        this.cellSize = cellSize;
+        this.minCellX = minCellX;
+        this.minCellY = minCellY;
+        this.columns = columns;
+        this.rows = rows;
+        this.counts = counts;
+    }
+
+    long total() {
+        long total = 0;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    long estimate(double minLng, double minLat, double maxLng, double maxLat) {
+        if (counts.length == 0 || maxLng <= minLng || maxLat <= minLat) return 0;
+
+        // clipped to the populated extent, so a bbox around the whole world costs
+        // no more than one around the city
+        int fromX = (int) Math.max(0, Math.floor(minLng / cellSize) - minCellX);
+        int toX = (int) Math.min(columns - 1, Math.floor(maxLng / cellSize) - minCellX);
+        int fromY = (int) Math.max(0, Math.floor(minLat / cellSize) - minCellY);
+        int toY = (int) Math.min(rows - 1, Math.floor(maxLat / cellSize) - minCellY);
+
+        double estimate = 0;
+        for (int y = fromY; y <= toY; y++) {
+            double cellMinLat = (minCellY + y) * cellSize;
+            double coverY = overlap(cellMinLat, minLat, maxLat);
+            for (int x = fromX; x <= toX; x++) {
+                long count = counts[y * columns + x];
+                if (count == 0) continue;
+                double cellMinLng = (minCellX + x) * cellSize;
+                estimate += count * overlap(cellMinLng, minLng, maxLng) * coverY;
+            }
+        }
+        return Math.round(estimate);
+    }
+
+    private double overlap(double cellMin, double min, double max) {
+        double covered = Math.min(cellMin + cellSize, max) - Math.max(cellMin, min);
+        return Math.max(0, covered) / cellSize;
+    }
+
+    static final class Builder {
+
+        private final double cellSize;
+        private final List<long[]> cells = new ArrayList<>();
+
+        Builder(double cellSize) {
+            this.cellSize = cellSize;
+        }
+
+        Builder add(long cellX, long cellY, long count) {
+            cells.add(new long[]{cellX, cellY, count});
+            return this;
+        }
+
+        DensityGrid build() {
+            if (cells.isEmpty()) return new DensityGrid(cellSize, 0, 0, 0, 0, new long[0]);
+
+            long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+            for (long[] cell : cells) {
+                minX = Math.min(minX, cell[0]);
+                maxX = Math.max(maxX, cell[0]);
+                minY = Math.min(minY, cell[1]);
+                maxY = Math.max(maxY, cell[1]);
+            }
+            int columns = Math.toIntExact(maxX - minX + 1);
+            int rows = Math.toIntExact(maxY - minY + 1);
+            long[] counts = new long[Math.multiplyExact(columns, rows)];
+            for (long[] cell : cells) {
+                counts[(int) (cell[1] - minY) * columns + (int) (cell[0] - minX)] += cell[2];
+            }
+            return new DensityGrid(cellSize, minX, minY, columns, rows, counts);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.teksi.montrealmap.load;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Groups endpoints with a similar cost, each class with its own concurrency
+ * limit and deadline. Handlers declare their class with {@link Bulkhead}.
+ */
+public enum EndpointClass {
+
+    /** Bbox searches returning many features. */
+    GEOMETRY,
+    /** Single-feature lookups by id or point. */
+    LOOKUP;
+
+    /**
+     * The class declared on a handler method or its controller, if any.
+     */
+    public static @Nullable EndpointClass of(Object handler) {
+        if (!(handler instanceof HandlerMethod method)) return null;
+        Bulkhead bulkhead = AnnotatedElementUtils.findMergedAnnotation(method.getMethod(), Bulkhead.class);
+        if (bulkhead == null) {
+            bulkhead = AnnotatedElementUtils.findMergedAnnotation(method.getBeanType(), Bulkhead.class);
+        }
+        return bulkhead != null ? bulkhead.value() : null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.teksi.montrealmap.load;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.Locale;
+
+/**
+ * How much geometry a building response carries, from the finest to the
+ * coarsest. Oversized requests are answered at a coarser level.
+ */
+public enum LevelOfDetail {
+
+    /** Full building geometry. */
+    POLYGONS,
+    /** One point per building, with its attributes. */
+    CENTROIDS,
+    /** One point per grid cell, with the number of buildings in it. */
+    AGGREGATES;
+
+    public static final String HEADER = "X-Level-Of-Detail";
+
+    public String headerValue() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public ResponseEntity<byte[]> tag(ResponseEntity<byte[]> response) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(HEADER, headerValue())
+                .body(response.getBody());
+    }
+}
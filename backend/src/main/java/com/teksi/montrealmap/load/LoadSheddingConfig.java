@@ -0,0 +1,27 @@
+package com.teksi.montrealmap.load;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.tomcat.TomcatContextCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class LoadSheddingConfig implements WebMvcConfigurer {
+
+    private final BulkheadInterceptor bulkheadInterceptor;
+    private final CancellationInterceptor cancellationInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(bulkheadInterceptor).addPathPatterns("/api/**");
+        registry.addInterceptor(cancellationInterceptor).addPathPatterns("/api/**");
+    }
+
+    @Bean
+    TomcatContextCustomizer clientDisconnectValve() {
+        return context -> context.getPipeline().addValve(new ClientDisconnectValve());
+    }
+}
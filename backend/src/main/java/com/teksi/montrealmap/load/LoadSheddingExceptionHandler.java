@@ -0,0 +1,75 @@
+package com.teksi.montrealmap.load;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns overload into a retryable status instead of a {@code 500}: a full
+ * bulkhead into {@code 429}, and a connection pool that could not hand out a
+ * connection in time or a missed deadline into {@code 503}, all with
+ * {@code Retry-After}.
+ */
+@Slf4j
+@RestControllerAdvice
+@RequiredArgsConstructor
+public class LoadSheddingExceptionHandler {
+
+    private final LoadSheddingProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Map<String, String>> bulkheadFull(BulkheadFullException e) {
+        return retryLater(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+    }
+
+    // for a client that went away the response is never read; it only ends the request
+    @ExceptionHandler(CancelledException.class)
+    public ResponseEntity<Map<String, String>> cancelled(CancelledException e, HttpServletResponse response) {
+        Counter.builder("montreal.cancellation.requests")
+                .description("Requests whose remaining work was dropped, by reason and the stage it stopped at")
+                .tag("reason", e.reason().name().toLowerCase(Locale.ROOT))
+                .tag("stage", e.stage())
+                .register(meterRegistry)
+                .increment();
+        // a streamed body already under way: rethrown, the container drops the connection
+        // rather than ending the body as if it were complete
+        if (response.isCommitted()) throw e;
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Request cancelled");
+    }
+
+    @ExceptionHandler({DataAccessException.class, TransactionException.class})
+    public ResponseEntity<Map<String, String>> dataAccessFailure(RuntimeException e) {
+        // anything other than pool exhaustion keeps its default handling
+        if (!isPoolExhausted(e)) throw e;
+
+        log.warn("No database connection available: {}", e.getMessage());
+        return retryLater(HttpStatus.SERVICE_UNAVAILABLE, "Database busy");
+    }
+
+    private ResponseEntity<Map<String, String>> retryLater(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, properties.retryAfter().toSeconds())))
+                .body(Map.of("error", message));
+    }
+
+    private static boolean isPoolExhausted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,21 @@
+package com.teksi.montrealmap.load;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.load-shedding")
+public record LoadSheddingProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("20000") long maxPolygons,
+        @DefaultValue("150000") long maxCentroids,
+        @DefaultValue("20000") long maxSearchResults,
+        @DefaultValue("64") int aggregateGridSize,
+        @DefaultValue("0.005") double densityCellSize,
+        @DefaultValue("30m") Duration densityRefreshInterval,
+        @DefaultValue("8") int geometryConcurrency,
+        @DefaultValue("32") int lookupConcurrency,
+        @DefaultValue("100ms") Duration acquireTimeout,
+        @DefaultValue("1s") Duration retryAfter
+) {}
@@ -0,0 +1,115 @@
+package com.teksi.montrealmap.load;
+
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import com.teksi.montrealmap.sync.DataChangedEvent;
+import com.teksi.montrealmap.sync.DataLayer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estimates how many buildings a bbox request returns from a density grid of
+ * the {@code buildings} table, and picks the level of detail to answer it at.
+ * Attribute filters are ignored, so the estimate is an upper bound.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RequestCostEstimator {
+
+    private static final String BUILDING_DENSITY_SQL = """
+            select floor((ST_XMin(geom) + ST_XMax(geom)) / 2 / ?)::bigint as cell_x,
+                   floor((ST_YMin(geom) + ST_YMax(geom)) / 2 / ?)::bigint as cell_y,
+                   count(*) as n
+            from buildings
+            where geom is not null
+            group by 1, 2
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LoadSheddingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<DensityGrid> buildingDensity = new AtomicReference<>();
+
+    /**
+     * Empty until the density statistics have been loaded.
+     */
+    public OptionalLong estimateBuildings(BuildingSearchRequest req) {
+        DensityGrid grid = buildingDensity.get();
+        if (grid == null) return OptionalLong.empty();
+        return OptionalLong.of(grid.estimate(req.minLng(), req.minLat(), req.maxLng(), req.maxLat()));
+    }
+
+    /**
+     * Whether the estimated result size is above {@code limit}; never while the
+     * density statistics are not loaded or load shedding is disabled.
+     */
+    public boolean exceeds(BuildingSearchRequest req, long limit) {
+        OptionalLong estimate = estimateBuildings(req);
+        if (!properties.enabled() || estimate.isEmpty() || estimate.getAsLong() <= limit) return false;
+
+        Counter.builder("montreal.load-shedding.rejected")
+                .description("Searches refused because of their estimated result size")
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+
+    /**
+     * The finest level, not finer than {@code finest}, whose estimated result
+     * size is within the configured limits.
+     */
+    public LevelOfDetail buildingLevelOfDetail(BuildingSearchRequest req, LevelOfDetail finest) {
+        LevelOfDetail level = finest;
+        OptionalLong estimate = estimateBuildings(req);
+        if (properties.enabled() && estimate.isPresent()) {
+            long features = estimate.getAsLong();
+            if (level == LevelOfDetail.POLYGONS && features > properties.maxPolygons()) {
+                level = LevelOfDetail.CENTROIDS;
+            }
+            if (level == LevelOfDetail.CENTROIDS && features > properties.maxCentroids()) {
+                level = LevelOfDetail.AGGREGATES;
+            }
+        }
+
+        Counter.builder("montreal.load-shedding.level-of-detail")
+                .description("Building geometry responses by level of detail served")
+                .tag("level", level.headerValue())
+                .tag("degraded", String.valueOf(level != finest))
+                .register(meterRegistry)
+                .increment();
+        return level;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${montreal.load-shedding.density-refresh-interval:30m}")
+    public void refresh() {
+        long start = System.nanoTime();
+        try {
+            double cellSize = properties.densityCellSize();
+            DensityGrid.Builder builder = new DensityGrid.Builder(cellSize);
+            jdbcTemplate.query(BUILDING_DENSITY_SQL, rs -> {
+                builder.add(rs.getLong("cell_x"), rs.getLong("cell_y"), rs.getLong("n"));
+            }, cellSize, cellSize);
+
+            DensityGrid grid = builder.build();
+            buildingDensity.set(grid);
+            log.info("Loaded building density statistics ({} buildings) in {} ms",
+                    grid.total(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Building density refresh failed, keeping previous statistics", e);
+        }
+    }
+
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        if (event.layer() == DataLayer.BUILDINGS) refresh();
+    }
+}
@@ -0,0 +1,11 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.teksi.montrealmap.Conversion")
+@Label("GeoJSON Conversion")
+@Description("Turning the loaded features into GeoJSON features")
+public final class ConversionEvent extends GeometryPhaseEvent {
+}
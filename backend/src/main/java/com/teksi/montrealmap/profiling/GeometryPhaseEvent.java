@@ -0,0 +1,12 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Label;
+
+public abstract class GeometryPhaseEvent extends RequestEvent {
+
+    @Label("Feature Count")
+    int featureCount;
+
+    @Label("Vertex Count")
+    long vertexCount;
+}
@@ -0,0 +1,140 @@
+package com.teksi.montrealmap.profiling;
+
+import com.teksi.montrealmap.geojson.GeoJson;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Marks the phases of a geometry request with JDK Flight Recorder events:
+ * {@link QueryEvent} (each JDBC statement), {@link HydrationEvent} (loading the
+ * features, including their queries), {@link ConversionEvent} (to GeoJSON) and
+ * {@link SerializationEvent} (Jackson). Each is tagged with the endpoint and bbox
+ * of the request running on the thread, see {@link #open(String, Envelope)}.
+ * <p>
+ * Outside a recording that enables them, the events are never committed and
+ * their counts never computed, which leaves little more than a field check.
+ */
+public final class GeometryProfile {
+
+    private static final ThreadLocal<@Nullable Scope> CURRENT = new ThreadLocal<>();
+
+    private static final double KM_PER_DEGREE_LAT = 110.574;
+    private static final double KM_PER_DEGREE_LNG_AT_EQUATOR = 111.320;
+
+    private GeometryProfile() {}
+
+    /**
+     * Tags the events of the current thread with the given endpoint and bbox
+     * until the scope is closed.
+     */
+    public static Scope open(String endpoint, Envelope bbox) {
+        Scope scope = new Scope(endpoint, areaKm2(bbox), CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final String endpoint;
+        private final double bboxArea;
+        private final @Nullable Scope previous;
+
+        private Scope(String endpoint, double bboxArea, @Nullable Scope previous) {
+            this.endpoint = endpoint;
+            this.bboxArea = bboxArea;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static <T> List<T> hydration(Supplier<List<T>> loader, ToLongFunction<List<T>> vertexCount) {
+        HydrationEvent event = new HydrationEvent();
+        event.begin();
+        List<T> items = loader.get();
+        commit(event, items.size(), () -> vertexCount.applyAsLong(items));
+        return items;
+    }
+
+    public static List<GeoJson.Feature> conversion(Supplier<List<GeoJson.Feature>> conversion) {
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        List<GeoJson.Feature> features = conversion.get();
+        commit(event, features.size(), () -> vertices(features));
+        return features;
+    }
+
+    public static byte[] serialization(int featureCount, LongSupplier vertexCount, Supplier<byte[]> writer) {
+        SerializationEvent event = new SerializationEvent();
+        event.begin();
+        byte[] body = writer.get();
+        commit(event, featureCount, vertexCount);
+        return body;
+    }
+
+    public static QueryEvent beginQuery() {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        return event;
+    }
+
+    public static void endQuery(QueryEvent event, @Nullable String sql) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        tag(event);
+        event.sql = sql;
+        event.commit();
+    }
+
+    private static void commit(GeometryPhaseEvent event, int featureCount, LongSupplier vertexCount) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        tag(event);
+        event.featureCount = featureCount;
+        event.vertexCount = vertexCount.getAsLong();
+        event.commit();
+    }
+
+    private static void tag(RequestEvent event) {
+        Scope scope = CURRENT.get();
+        if (scope == null) return;
+        event.endpoint = scope.endpoint;
+        event.bboxArea = scope.bboxArea;
+    }
+
+    /**
+     * Positions in the geometries of the given features.
+     */
+    public static long vertices(List<GeoJson.Feature> features) {
+        long count = 0;
+        for (GeoJson.Feature feature : features) {
+            if (feature.geometry() != null) count += positions(feature.geometry().coordinates());
+        }
+        return count;
+    }
+
+    // coordinates nest lists down to positions, which are lists of numbers
+    private static long positions(@Nullable Object coordinates) {
+        if (!(coordinates instanceof List<?> list) || list.isEmpty()) return 0;
+        if (list.get(0) instanceof Number) return 1;
+        long count = 0;
+        for (Object child : list) {
+            count += positions(child);
+        }
+        return count;
+    }
+
+    private static double areaKm2(Envelope bbox) {
+        if (bbox.isNull()) return 0;
+        double midLat = Math.toRadians((bbox.getMinY() + bbox.getMaxY()) / 2);
+        return bbox.getWidth() * KM_PER_DEGREE_LNG_AT_EQUATOR * Math.cos(midLat)
+                * bbox.getHeight() * KM_PER_DEGREE_LAT;
+    }
+}
@@ -0,0 +1,11 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.teksi.montrealmap.Hydration")
+@Label("Hydration")
+@Description("Loading the features of a request: the query and building the entities and JTS geometries from its rows")
+public final class HydrationEvent extends GeometryPhaseEvent {
+}
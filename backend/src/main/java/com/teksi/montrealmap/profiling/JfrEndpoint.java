@@ -0,0 +1,45 @@
+package com.teksi.montrealmap.profiling;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@code /actuator/jfr}: state of the continuous recording, and {@code POST
+ * /actuator/jfr/{start|stop|dump}} to control it; {@code dump} writes the
+ * recorded window to a file and returns its path (or the state when no
+ * recording runs).
+ */
+@Component
+@Endpoint(id = "jfr")
+@RequiredArgsConstructor
+public class JfrEndpoint {
+
+    private final JfrRecorder jfrRecorder;
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return jfrRecorder.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> control(@Selector String action) {
+        switch (action) {
+            case "start" -> jfrRecorder.start();
+            case "stop" -> jfrRecorder.stop();
+            case "dump" -> {
+                Optional<Path> file = jfrRecorder.dump();
+                if (file.isPresent()) return Map.of("file", file.get().toAbsolutePath().toString());
+            }
+            default -> throw new IllegalArgumentException("Unknown action: " + action);
+        }
+        return jfrRecorder.status();
+    }
+}
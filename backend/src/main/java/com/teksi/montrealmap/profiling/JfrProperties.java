@@ -0,0 +1,19 @@
+package com.teksi.montrealmap.profiling;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.jfr")
+public record JfrProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("default") String settings,
+        @DefaultValue("30m") Duration maxAge,
+        @DefaultValue("256MB") DataSize maxSize,
+        @DefaultValue("10ms") Duration threshold,
+        @DefaultValue("jfr") Path directory
+) {
+}
@@ -0,0 +1,127 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A continuous flight recording kept on disk for the last {@code max-age} (at
+ * most {@code max-size}), with the JVM's {@code settings} (the low-overhead
+ * {@code default} profile unless changed) plus the request phase events of
+ * {@link GeometryProfile} that took longer than {@code threshold}. It starts
+ * with the application when {@code montreal.jfr.enabled} is set, or on demand
+ * through {@link JfrEndpoint}; {@link #dump()} writes the window recorded so far
+ * to {@code directory}, as does the JVM on exit.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JfrRecorder implements SmartInitializingSingleton {
+
+    private static final String RECORDING_NAME = "montreal-continuous";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final List<Class<? extends RequestEvent>> EVENTS = List.of(
+            QueryEvent.class, HydrationEvent.class, ConversionEvent.class, SerializationEvent.class);
+
+    private final JfrProperties properties;
+
+    private @Nullable Recording recording;
+
+    // before the web server and the (possibly deferred) database bootstrap, so startup is recorded too
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (properties.enabled()) start();
+    }
+
+    public synchronized void start() {
+        if (recording != null) return;
+
+        Recording started;
+        try {
+            started = new Recording(Configuration.getConfiguration(properties.settings()));
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings: " + properties.settings(), e);
+        }
+        started.setName(RECORDING_NAME);
+        started.setToDisk(true);
+        started.setMaxAge(properties.maxAge());
+        started.setMaxSize(properties.maxSize().toBytes());
+        started.setDumpOnExit(true);
+        try {
+            started.setDestination(file("exit"));
+        } catch (IOException e) {
+            started.close();
+            throw new UncheckedIOException(e);
+        }
+        for (Class<? extends RequestEvent> event : EVENTS) {
+            started.enable(event).withThreshold(properties.threshold());
+        }
+        started.start();
+        recording = started;
+        log.info("Started continuous flight recording (last {}, at most {}, phases over {})",
+                properties.maxAge(), properties.maxSize(), properties.threshold());
+    }
+
+    public synchronized void stop() {
+        if (recording == null) return;
+        // the window is dropped unless dumped first; the exit destination is only meant for JVM exit
+        try {
+            recording.setDestination(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recording.close();
+        recording = null;
+        log.info("Stopped continuous flight recording");
+    }
+
+    /**
+     * Writes the recorded window to a new file, empty when no recording runs.
+     */
+    public synchronized Optional<Path> dump() {
+        if (recording == null) return Optional.empty();
+        try {
+            Path file = file(LocalDateTime.now().format(FILE_TIMESTAMP));
+            recording.dump(file);
+            log.info("Dumped flight recording to {}", file.toAbsolutePath());
+            return Optional.of(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", recording != null);
+        status.put("maxAge", properties.maxAge().toString());
+        status.put("maxSize", properties.maxSize().toString());
+        status.put("threshold", properties.threshold().toString());
+        status.put("directory", properties.directory().toAbsolutePath().toString());
+        if (recording != null) {
+            status.put("startTime", String.valueOf(recording.getStartTime()));
+            status.put("size", recording.getSize());
+        }
+        return status;
+    }
+
+    private Path file(String suffix) throws IOException {
+        Files.createDirectories(properties.directory());
+        return properties.directory().resolve(RECORDING_NAME + "-" + suffix + ".jfr");
+    }
+}
@@ -0,0 +1,14 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.teksi.montrealmap.Query")
+@Label("Query")
+@Description("A JDBC statement, from execution until its result is available")
+public final class QueryEvent extends RequestEvent {
+
+    @Label("SQL")
+    String sql;
+}
@@ -0,0 +1,24 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Fields shared by the phase events of a request, filled in from the
+ * {@link GeometryProfile#open(String, org.locationtech.jts.geom.Envelope) current scope}.
+ */
+@Category({"Montreal Map API", "Requests"})
+@StackTrace(false)
+public abstract class RequestEvent extends Event {
+
+    @Label("Endpoint")
+    @Description("Operation the phase ran for, e.g. buildings.searchGeoJsonPolygons; empty outside a request")
+    String endpoint;
+
+    @Label("Bbox Area")
+    @Description("Approximate area of the requested bbox, in km²")
+    double bboxArea;
+}
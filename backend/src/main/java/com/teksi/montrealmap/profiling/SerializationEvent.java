@@ -0,0 +1,11 @@
+package com.teksi.montrealmap.profiling;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.teksi.montrealmap.Serialization")
+@Label("Serialization")
+@Description("Writing the response body with Jackson")
+public final class SerializationEvent extends GeometryPhaseEvent {
+}
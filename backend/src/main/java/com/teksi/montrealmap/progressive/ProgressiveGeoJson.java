@@ -0,0 +1,78 @@
+package com.teksi.montrealmap.progressive;
+
+import com.teksi.montrealmap.geojson.GeoJson;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A viewport answered in two phases: a coarse layer covering the whole
+ * {@code bbox}, then the full-detail features in spatial chunks, each
+ * converted only when it is written. Chunks are cells of a quadtree over the
+ * viewport, split until they hold at most {@code chunkSize} features and sent
+ * from the center of the viewport outwards; a feature belongs to the cell
+ * holding the center of its envelope.
+ */
+public record ProgressiveGeoJson(Envelope bbox, List<GeoJson.Feature> coarse, List<Chunk> chunks) {
+
+    private static final int MAX_DEPTH = 12;
+
+    public record Chunk(Envelope bounds, Supplier<List<GeoJson.Feature>> features) {}
+
+    public static ProgressiveGeoJson coarseOnly(Envelope bbox, List<GeoJson.Feature> coarse) {
+        return new ProgressiveGeoJson(bbox, coarse, List.of());
+    }
+
+    public static <T> ProgressiveGeoJson of(Envelope bbox, List<GeoJson.Feature> coarse,
+                                            List<T> items, Function<T, Envelope> envelope,
+                                            Function<T, GeoJson.Feature> converter, int chunkSize) {
+        List<Cell<T>> cells = new ArrayList<>();
+        split(bbox, items.stream().map(item -> new Item<>(item, center(bbox, envelope.apply(item)))).toList(),
+                Math.max(1, chunkSize), 0, cells);
+
+        List<Chunk> chunks = cells.stream()
+                .sorted(Comparator.comparingDouble(cell -> cell.bounds().centre().distance(bbox.centre())))
+                .map(cell -> new Chunk(cell.bounds(), () -> cell.items().stream().map(converter).toList()))
+                .toList();
+        return new ProgressiveGeoJson(bbox, coarse, chunks);
+    }
+
+    private record Item<T>(T value, double[] center) {}
+
+    private record Cell<T>(Envelope bounds, List<T> items) {}
+
+    private static <T> void split(Envelope bounds, List<Item<T>> items, int chunkSize, int depth, List<Cell<T>> cells) {
+        if (items.isEmpty()) return;
+        if (items.size() <= chunkSize || depth == MAX_DEPTH) {
+            cells.add(new Cell<>(bounds, items.stream().map(Item::value).toList()));
+            return;
+        }
+
+        double midX = (bounds.getMinX() + bounds.getMaxX()) / 2;
+        double midY = (bounds.getMinY() + bounds.getMaxY()) / 2;
+        List<List<Item<T>>> quadrants = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (Item<T> item : items) {
+            int quadrant = (item.center()[0] < midX ? 0 : 1) + (item.center()[1] < midY ? 0 : 2);
+            quadrants.get(quadrant).add(item);
+        }
+
+        split(new Envelope(bounds.getMinX(), midX, bounds.getMinY(), midY), quadrants.get(0), chunkSize, depth + 1, cells);
+        split(new Envelope(midX, bounds.getMaxX(), bounds.getMinY(), midY), quadrants.get(1), chunkSize, depth + 1, cells);
+        split(new Envelope(bounds.getMinX(), midX, midY, bounds.getMaxY()), quadrants.get(2), chunkSize, depth + 1, cells);
+        split(new Envelope(midX, bounds.getMaxX(), midY, bounds.getMaxY()), quadrants.get(3), chunkSize, depth + 1, cells);
+    }
+
+    // features reaching into the viewport from outside go to the nearest cell
+    private static double[] center(Envelope bbox, Envelope envelope) {
+        double x = (envelope.getMinX() + envelope.getMaxX()) / 2;
+        double y = (envelope.getMinY() + envelope.getMaxY()) / 2;
+        return new double[]{
+                Math.min(Math.max(x, bbox.getMinX()), bbox.getMaxX()),
+                Math.min(Math.max(y, bbox.getMinY()), bbox.getMaxY())
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.teksi.montrealmap.progressive;
+
+import com.teksi.montrealmap.cache.ResponseCompressor;
+import com.teksi.montrealmap.cache.StreamedBody;
+import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.CancelledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams a {@link ProgressiveGeoJson} as newline-delimited GeoJSON: one
+ * FeatureCollection per line, each flushed to the client as soon as it is
+ * written, with a {@code phase} member and the {@code bbox} it covers:
+ * <ul>
+ *     <li>{@code coarse}: the whole viewport at low detail,</li>
+ *     <li>{@code detail}: the full features of one chunk, replacing the coarse
+ *     features of its bbox,</li>
+ *     <li>{@code complete}: no features, sent last; whatever coarse features are
+ *     left are final.</li>
+ * </ul>
+ * The status is sent with the first line, so a failure after it cannot turn
+ * into an error status: the body is abandoned instead, without its end, and the
+ * connection is dropped. A client must treat a stream that ends without the
+ * {@code complete} line as failed, whatever the status.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProgressiveGeoJsonWriter {
+
+    private static final byte NEWLINE = '\n';
+
+    private final JsonMapper jsonMapper;
+    private final ResponseCompressor responseCompressor;
+    private final MeterRegistry meterRegistry;
+
+    record Line(String type, String phase, List<Double> bbox, List<GeoJson.Feature> features) {
+        static Line of(String phase, Envelope bbox, List<GeoJson.Feature> features) {
+            return new Line("FeatureCollection", phase,
+                    List.of(bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY()), features);
+        }
+    }
+
+    public void write(ProgressiveGeoJson body, @Nullable String acceptEncoding, HttpServletResponse response)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        StreamedBody out = responseCompressor.stream(response, acceptEncoding);
+        int written = 0;
+        try {
+            write(out, Line.of("coarse", body.bbox(), body.coarse()));
+            written++;
+            for (ProgressiveGeoJson.Chunk chunk : body.chunks()) {
+                write(out, Line.of("detail", chunk.bounds(), chunk.features().get()));
+                written++;
+            }
+            write(out, Line.of("complete", body.bbox(), List.of()));
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            // rethrown, the exception makes the container drop the connection instead of ending the body
+            out.abort();
+            truncated(e, written, body.chunks().size() + 2);
+            throw e;
+        }
+        count("complete");
+    }
+
+    private void truncated(Exception e, int written, int lines) {
+        String reason = e instanceof CancelledException cancelled
+                ? cancelled.reason().name().toLowerCase(Locale.ROOT)
+                : e instanceof IOException ? "io" : "error";
+        count(reason);
+        if (e instanceof RuntimeException && !(e instanceof CancelledException)) {
+            log.warn("Progressive response truncated after {} of {} lines", written, lines, e);
+        } else {
+            log.debug("Progressive response truncated after {} of {} lines: {}", written, lines, e.getMessage());
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder("montreal.progressive.responses")
+                .description("Progressive responses that sent their complete line, or were truncated and why")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void write(StreamedBody out, Line line) throws IOException {
+        Cancellation.current().throwIfCancelled("serialization");
+        out.write(jsonMapper.writeValueAsBytes(line));
+        out.write(NEWLINE);
+        out.flush();
+    }
+}
@@ -0,0 +1,11 @@
+package com.teksi.montrealmap.progressive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("montreal.progressive")
+public record ProgressiveProperties(
+        @DefaultValue("1000") int chunkSize,
+        @DefaultValue("512") int coarseResolution
+) {
+}
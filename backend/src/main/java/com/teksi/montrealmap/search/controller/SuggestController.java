@@ -0,0 +1,26 @@
+package com.teksi.montrealmap.search.controller;
+
+import com.teksi.montrealmap.search.dto.SuggestionResponse;
+import com.teksi.montrealmap.search.service.SuggestService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/search")
+public class SuggestController {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final SuggestService suggestService;
+
+    @GetMapping("/suggest")
+    public List<SuggestionResponse> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        return suggestService.suggest(q, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+}
@@ -0,0 +1,14 @@
+package com.teksi.montrealmap.search.dto;
+
+import java.util.List;
+
+/**
+ * One autocomplete hit. {@code bbox} is {@code [minLng, minLat, maxLng, maxLat]}
+ * so the client can zoom straight to the feature.
+ */
+public record SuggestionResponse(
+        String layer,
+        String id,
+        String label,
+        List<Double> bbox
+) {}
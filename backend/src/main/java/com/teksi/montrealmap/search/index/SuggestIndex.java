@@ -0,0 +1,215 @@
+package com.teksi.montrealmap.search.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable word-prefix index for autocomplete.
+ * <p>
+ * Text is folded before indexing and querying (accents stripped, lower case,
+ * punctuation as word breaks), so "montreal sainte-cath" finds "Rue
+ * Sainte-Catherine, Montréal". Each entry's text with all separators removed
+ * is kept in a sorted "compact" array: its range for the query holds every
+ * exact and whole-text prefix match, which rank first, and lets a zone code
+ * like {@code C.02-123} be found by typing {@code c02123}. Every word is a
+ * posting in a second sorted array; matches on later words only fill the
+ * remaining slots, from the range of the query's most selective word, verifying
+ * the other words against the candidates.
+ */
+public final class SuggestIndex {
+
+    public record Entry(
+            String layer,
+            String id,
+            String label,
+            double minLng,
+            double minLat,
+            double maxLng,
+            double maxLat
+    ) {}
+
+    // bounds the word-match work for very short queries that match a large share of the index
+    private static final int MAX_SCANNED_POSTINGS = 1_000;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final SuggestIndex EMPTY = new Builder().build();
+
+    private final Entry[] entries;
+    private final String[] texts;
+    private final String[] compacts;
+    // entries sorted by compact form
+    private final int[] compactOrder;
+    private final String[] postingWords;
+    private final int[] postingEntries;
+
+    private SuggestIndex(Entry[] entries, String[] texts, String[] compacts, int[] compactOrder,
+                         String[] postingWords, int[] postingEntries) {
+        this.entries = entries;
+        this.texts = texts;
+        this.compacts = compacts;
+        this.compactOrder = compactOrder;
+        this.postingWords = postingWords;
+        this.postingEntries = postingEntries;
+    }
+
+    public static SuggestIndex empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public List<Entry> search(String query, int limit) {
+        String text = fold(query);
+        if (text.isEmpty()) return List.of();
+
+        String[] words = text.split(" ");
+        String compact = text.replace(" ", "");
+        Comparator<Integer> order = Comparator.<Integer>comparingInt(entry -> rank(entry, compact))
+                .thenComparingInt(entry -> texts[entry].length())
+                .thenComparing(entry -> texts[entry]);
+
+        // every exact and whole-text prefix match, ranked in full before anything is dropped
+        int compactFrom = lowerBound(compacts, compactOrder, compact);
+        int compactTo = lowerBound(compacts, compactOrder, compact + Character.MAX_VALUE);
+        List<Integer> prefixMatches = new ArrayList<>(compactTo - compactFrom);
+        for (int i = compactFrom; i < compactTo; i++) prefixMatches.add(compactOrder[i]);
+        List<Integer> results = new ArrayList<>(prefixMatches.stream().sorted(order).limit(limit).toList());
+        if (results.size() >= limit) return results.stream().map(entry -> entries[entry]).toList();
+
+        // entries matching every word all share the narrowest word range
+        int from = 0;
+        int to = postingWords.length;
+        for (String word : words) {
+            int wordFrom = lowerBound(postingWords, null, word);
+            int wordTo = lowerBound(postingWords, null, word + Character.MAX_VALUE);
+            if (wordTo - wordFrom < to - from) {
+                from = wordFrom;
+                to = wordTo;
+            }
+        }
+
+        int[] candidates = Arrays.copyOfRange(postingEntries, from, Math.min(to, from + MAX_SCANNED_POSTINGS));
+        Arrays.sort(candidates);
+
+        List<Integer> wordMatches = new ArrayList<>();
+        for (int i = 0; i < candidates.length; i++) {
+            if (i > 0 && candidates[i] == candidates[i - 1]) continue;
+            if (!compacts[candidates[i]].startsWith(compact) && matches(candidates[i], words)) {
+                wordMatches.add(candidates[i]);
+            }
+        }
+        wordMatches.stream().sorted(order).limit(limit - results.size()).forEach(results::add);
+        return results.stream().map(entry -> entries[entry]).toList();
+    }
+
+    private boolean matches(int entry, String[] words) {
+        String text = texts[entry];
+        for (String word : words) {
+            if (!text.startsWith(word) && !text.contains(" " + word)) return false;
+        }
+        return true;
+    }
+
+    // exact match first, then prefix of the whole text, then any word match
+    private int rank(int entry, String compact) {
+        if (compacts[entry].equals(compact)) return 0;
+        if (compacts[entry].startsWith(compact)) return 1;
+        return 2;
+    }
+
+    // first position in sorted values (read through order, when given) not below key
+    private static int lowerBound(String[] values, int[] order, String key) {
+        int lo = 0;
+        int hi = order != null ? order.length : values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            String value = order != null ? values[order[mid]] : values[mid];
+            if (value.compareTo(key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Accent-insensitive, case-insensitive form with words separated by single
+     * spaces.
+     */
+    static String fold(String text) {
+        if (text == null) return "";
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        // ligatures have no decomposition, so "Sœurs" must be spelled out to be found as "soeurs"
+        String spelled = stripped.toLowerCase(Locale.ROOT)
+                .replace("œ", "oe")
+                .replace("æ", "ae")
+                .replace("ß", "ss");
+        return NON_ALPHANUMERIC.matcher(spelled).replaceAll(" ").trim();
+    }
+
+    public static final class Builder {
+
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> compacts = new ArrayList<>();
+        private final List<String> postingWords = new ArrayList<>();
+        private final List<Integer> postingEntries = new ArrayList<>();
+
+        /**
+         * Adds {@code entry}, searchable by the words of {@code searchableText}.
+         */
+        public Builder add(Entry entry, String searchableText) {
+            String text = fold(searchableText);
+            if (text.isEmpty()) return this;
+
+            int id = entries.size();
+            entries.add(entry);
+            texts.add(text);
+            String compact = text.replace(" ", "");
+            compacts.add(compact);
+
+            Set<String> words = new LinkedHashSet<>(Arrays.asList(text.split(" ")));
+            for (String word : words) {
+                postingWords.add(word);
+                postingEntries.add(id);
+            }
+            return this;
+        }
+
+        public SuggestIndex build() {
+            Integer[] order = new Integer[postingWords.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparing(postingWords::get));
+
+            String[] words = new String[order.length];
+            int[] wordEntries = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                words[i] = postingWords.get(order[i]);
+                wordEntries[i] = postingEntries.get(order[i]);
+            }
+
+            int[] compactOrder = IntStream.range(0, compacts.size()).boxed()
+                    .sorted(Comparator.comparing(compacts::get))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            return new SuggestIndex(
+                    entries.toArray(Entry[]::new),
+                    texts.toArray(String[]::new),
+                    compacts.toArray(String[]::new),
+                    compactOrder,
+                    words,
+                    wordEntries);
+        }
+    }
+}
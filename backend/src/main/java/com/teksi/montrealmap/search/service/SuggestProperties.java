@@ -0,0 +1,12 @@
+package com.teksi.montrealmap.search.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.search.suggest")
+public record SuggestProperties(
+        @DefaultValue("10m") Duration refreshInterval,
+        @DefaultValue("5s") Duration rebuildDelay
+) {}
@@ -0,0 +1,9 @@
+package com.teksi.montrealmap.search.service;
+
+import com.teksi.montrealmap.search.dto.SuggestionResponse;
+
+import java.util.List;
+
+public interface SuggestService {
+    List<SuggestionResponse> suggest(String query, int limit);
+}
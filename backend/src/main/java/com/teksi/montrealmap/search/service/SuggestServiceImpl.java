@@ -0,0 +1,131 @@
+package com.teksi.montrealmap.search.service;
+
+import com.teksi.montrealmap.search.dto.SuggestionResponse;
+import com.teksi.montrealmap.search.index.SuggestIndex;
+import com.teksi.montrealmap.sync.DataChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves suggestions from an in-memory {@link SuggestIndex} over zone codes and
+ * building addresses. The index is rebuilt in the background and swapped in
+ * atomically, periodically and whenever zoning or building data changes; until
+ * the first build finishes, suggestions are empty.
+ * <p>
+ * A change is followed by one rebuild, {@code montreal.search.suggest.rebuild-delay}
+ * later, on a thread of its own: an ingest publishes a change per statement, and
+ * rebuilding on the publishing thread would hold up the listeners invalidating
+ * caches and tiles.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestServiceImpl implements SuggestService {
+
+    private static final String ZONAGE_SQL = """
+            select id::text as id, zone_code as text, zone_code || coalesce(' - ' || arrondissement, '') as label,
+                   ST_XMin(geom) as min_lng, ST_YMin(geom) as min_lat, ST_XMax(geom) as max_lng, ST_YMax(geom) as max_lat
+            from zonage
+            where zone_code is not null and geom is not null
+            """;
+
+    private static final String ZONAGE_TAB_SQL = """
+            select ogc_fid::text as id, numero_complet as text, numero_complet as label,
+                   ST_XMin(wkb_geometry) as min_lng, ST_YMin(wkb_geometry) as min_lat,
+                   ST_XMax(wkb_geometry) as max_lng, ST_YMax(wkb_geometry) as max_lat
+            from raw.raw_zonage_tab
+            where numero_complet is not null and wkb_geometry is not null
+            """;
+
+    private static final String BUILDINGS_SQL = """
+            select id, address as text, address as label,
+                   ST_XMin(geom) as min_lng, ST_YMin(geom) as min_lat, ST_XMax(geom) as max_lng, ST_YMax(geom) as max_lat
+            from buildings
+            where address is not null and geom is not null
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SuggestProperties properties;
+    private final AtomicReference<SuggestIndex> index = new AtomicReference<>(SuggestIndex.empty());
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suggest-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public List<SuggestionResponse> suggest(String query, int limit) {
+        return index.get().search(query, limit).stream()
+                .map(entry -> new SuggestionResponse(
+                        entry.layer(),
+                        entry.id(),
+                        entry.label(),
+                        List.of(entry.minLng(), entry.minLat(), entry.maxLng(), entry.maxLat())))
+                .toList();
+    }
+
+    // synchronized so that a slower, older build cannot replace a newer index
+    @Scheduled(initialDelay = 0, fixedDelayString = "${montreal.search.suggest.refresh-interval:10m}")
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        try {
+            SuggestIndex.Builder builder = new SuggestIndex.Builder();
+            load(builder, "zonage", ZONAGE_SQL);
+            load(builder, "zonage-tab", ZONAGE_TAB_SQL);
+            load(builder, "buildings", BUILDINGS_SQL);
+
+            SuggestIndex built = builder.build();
+            index.set(built);
+            log.info("Built suggest index with {} entries in {} ms", built.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Suggest index refresh failed, keeping previous index", e);
+        }
+    }
+
+    // changes arriving before the pending rebuild starts are covered by it
+    @EventListener(DataChangedEvent.class)
+    public void onDataChanged() {
+        if (!rebuildPending.compareAndSet(false, true)) return;
+        rebuilder.schedule(() -> {
+            rebuildPending.set(false);
+            refresh();
+        }, properties.rebuildDelay().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void load(SuggestIndex.Builder builder, String layer, String sql) {
+        jdbcTemplate.query(sql, rs -> {
+            builder.add(entry(layer, rs), rs.getString("text"));
+        });
+    }
+
+    private static SuggestIndex.Entry entry(String layer, ResultSet rs) throws SQLException {
+        return new SuggestIndex.Entry(
+                layer,
+                rs.getString("id"),
+                rs.getString("label"),
+                rs.getDouble("min_lng"),
+                rs.getDouble("min_lat"),
+                rs.getDouble("max_lng"),
+                rs.getDouble("max_lat"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.teksi.montrealmap.startup;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SchemaValidationException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * With {@code montreal.startup.defer-database}, runs the Flyway migration and
+ * Hibernate schema validation once the context is refreshed. The web server is
+ * already listening at that point but the application is not ready yet, so
+ * {@link ReadinessGateFilter} answers API requests with 503 and the readiness
+ * probe reports out of service until this is done. A failure stops the
+ * application, as it would without deferral.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatabaseBootstrap {
+
+    private final StartupProperties properties;
+    private final ObjectProvider<Flyway> flyway;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    // before scheduled tasks are started, so they see the migrated schema
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ContextRefreshedEvent.class)
+    public void bootstrap() {
+        if (!properties.deferDatabase()) return;
+
+        long start = System.nanoTime();
+        flyway.ifAvailable(Flyway::migrate);
+        entityManagerFactory.ifAvailable(DatabaseBootstrap::validateSchema);
+        log.info("Deferred database bootstrap (migration, schema validation) finished in {} ms",
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void validateSchema(EntityManagerFactory emf) {
+        try {
+            emf.getSchemaManager().validate();
+        } catch (SchemaValidationException e) {
+            throw new IllegalStateException("Database schema does not match the entity mappings", e);
+        }
+    }
+}
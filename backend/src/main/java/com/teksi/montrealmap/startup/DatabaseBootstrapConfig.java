@@ -0,0 +1,34 @@
+package com.teksi.montrealmap.startup;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.flyway.autoconfigure.FlywayMigrationStrategy;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * With {@code montreal.startup.defer-database}, nothing touches the database
+ * while the context starts: the Flyway migration is skipped here and Hibernate
+ * picks its dialect from the database name instead of JDBC metadata, without schema
+ * validation. {@link DatabaseBootstrap} runs both once the web server is up.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DatabaseBootstrapConfig {
+
+    @Bean
+    FlywayMigrationStrategy deferrableFlywayMigrationStrategy(StartupProperties properties) {
+        return flyway -> {
+            if (!properties.deferDatabase()) flyway.migrate();
+        };
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer deferrableHibernateBootstrap(StartupProperties properties) {
+        return hibernateProperties -> {
+            if (!properties.deferDatabase()) return;
+            hibernateProperties.put(AvailableSettings.ALLOW_METADATA_ON_BOOT, false);
+            hibernateProperties.putIfAbsent(AvailableSettings.JAKARTA_HBM2DDL_DB_NAME, "PostgreSQL");
+            hibernateProperties.put(AvailableSettings.HBM2DDL_AUTO, "none");
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package com.teksi.montrealmap.startup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Read at runtime rather than through conditions, so the same AOT-processed
+ * build works with either setting.
+ */
+@ConfigurationProperties("montreal.startup")
+public record StartupProperties(
+        @DefaultValue("false") boolean deferDatabase,
+        @DefaultValue("2s") Duration retryAfter
+) {}
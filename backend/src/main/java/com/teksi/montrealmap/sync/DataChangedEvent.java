@@ -0,0 +1,12 @@
+package com.teksi.montrealmap.sync;
+
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Data of {@code layer} changed within {@code area} (WGS84), or anywhere in the
+ * layer when {@code area} is null. Published once per layer for all changes up
+ * to {@code version}.
+ */
+public record DataChangedEvent(DataLayer layer, @Nullable Envelope area, long version) {
+}
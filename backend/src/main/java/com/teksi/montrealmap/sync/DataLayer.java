@@ -0,0 +1,28 @@
+package com.teksi.montrealmap.sync;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The data tables whose changes are published through {@code data_version},
+ * by the layer name their triggers record.
+ */
+public enum DataLayer {
+    BUILDINGS("buildings"),
+    ZONAGE("zonage"),
+    ZONAGE_TAB("zonage-tab");
+
+    private final String id;
+
+    DataLayer(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public static Optional<DataLayer> fromId(String id) {
+        return Arrays.stream(values()).filter(layer -> layer.id.equals(id)).findFirst();
+    }
+}
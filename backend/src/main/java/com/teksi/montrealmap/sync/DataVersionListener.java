@@ -0,0 +1,294 @@
+package com.teksi.montrealmap.sync;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Turns the {@code data_version} rows written by the data table triggers into
+ * {@link DataChangedEvent}s, so every node drops what it derived from the
+ * changed data, whichever node or script changed it.
+ * <p>
+ * A dedicated connection to the primary {@code LISTEN}s on the
+ * {@code data_changed} channel; notifications only wake the listener up, the
+ * table is read for what changed. When the connection cannot be made (or
+ * {@code montreal.data-version.listen} is off, e.g. behind a transaction-pooling
+ * proxy), changes are picked up every {@code poll-interval} instead. Changes
+ * arriving in quick succession, as during a data load, are published together
+ * once no more arrive for {@code quiet-period}. Rows older than
+ * {@code retention} are purged from here rather than by the triggers, so data
+ * loads do not pay for it.
+ */
+@Slf4j
+@Component
+public class DataVersionListener {
+
+    private static final String CHANNEL = "data_changed";
+    private static final int MAX_ROWS_PER_POLL = 1_000;
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private static final String LATEST_VERSION_SQL = "select coalesce(max(version), 0) from data_version";
+
+    private static final String CHANGES_SQL = """
+            select version, layer, min_lng, min_lat, max_lng, max_lat
+            from data_version
+            where version > ?
+            order by version
+            limit ?
+            """;
+
+    private static final String PURGE_SQL = "delete from data_version where changed_at < now() - ? * interval '1 second'";
+
+    private record Row(long version, String layer, @Nullable Envelope area) {}
+
+    // the merged changes of one layer; a null area covers the whole layer
+    private static final class Change {
+        @Nullable Envelope area = new Envelope();
+        long version;
+    }
+
+    private final HikariDataSource primaryDataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DataVersionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Thread thread;
+
+    private volatile boolean running;
+    private volatile @Nullable Connection listenConnection;
+
+    // only accessed by the listener thread
+    private long lastVersion = -1;
+    private boolean listenFailureLogged;
+    private long nextPurge = System.nanoTime();
+
+    public DataVersionListener(HikariDataSource primaryDataSource,
+                               JdbcTemplate jdbcTemplate,
+                               ApplicationEventPublisher eventPublisher,
+                               DataVersionProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.primaryDataSource = primaryDataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.thread = new Thread(this::run, "data-version-listener");
+        this.thread.setDaemon(true);
+
+        Gauge.builder("montreal.data-version.listening", this, listener -> listener.listenConnection != null ? 1 : 0)
+                .description("Whether data changes are received through LISTEN/NOTIFY (1) or only by polling (0)")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.enabled() || running) return;
+        running = true;
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            awaitChange();
+            if (!running) return;
+            poll();
+        }
+    }
+
+    /**
+     * Returns once a notification has arrived and the changes have settled, or
+     * after {@code poll-interval}.
+     */
+    private void awaitChange() {
+        PGConnection connection = listenConnection();
+        if (connection == null) {
+            sleep(properties.pollInterval().toMillis());
+            return;
+        }
+
+        try {
+            if (!hasNotifications(connection, properties.pollInterval().toMillis())) return;
+
+            long settleDeadline = System.nanoTime() + properties.pollInterval().toNanos();
+            while (System.nanoTime() < settleDeadline
+                    && hasNotifications(connection, Math.max(1, properties.quietPeriod().toMillis()))) {
+                // keep draining until the load pauses
+            }
+        } catch (SQLException e) {
+            if (running) {
+                log.warn("Lost the data change listener connection, polling until it is back: {}", e.getMessage());
+            }
+            closeListenConnection();
+        }
+    }
+
+    private static boolean hasNotifications(PGConnection connection, long timeoutMillis) throws SQLException {
+        PGNotification[] notifications = connection.getNotifications((int) Math.min(timeoutMillis, Integer.MAX_VALUE));
+        return notifications != null && notifications.length > 0;
+    }
+
+    private @Nullable PGConnection listenConnection() {
+        if (!properties.listen()) return null;
+
+        Connection connection = listenConnection;
+        try {
+            if (connection == null) {
+                connection = openListenConnection();
+                listenConnection = connection;
+                listenFailureLogged = false;
+                log.info("Listening for data changes on channel {}", CHANNEL);
+            }
+            return connection.unwrap(PGConnection.class);
+        } catch (SQLException e) {
+            closeListenConnection();
+            if (!listenFailureLogged) {
+                log.warn("Could not listen for data changes, polling every {} instead: {}",
+                        properties.pollInterval(), e.getMessage());
+                listenFailureLogged = true;
+            }
+            return null;
+        }
+    }
+
+    // outside the pool: the connection is held for as long as the application runs
+    private Connection openListenConnection() throws SQLException {
+        Properties info = new Properties();
+        if (primaryDataSource.getUsername() != null) info.setProperty("user", primaryDataSource.getUsername());
+        if (primaryDataSource.getPassword() != null) info.setProperty("password", primaryDataSource.getPassword());
+        info.setProperty("tcpKeepAlive", "true");
+        info.setProperty("ApplicationName", "montreal-map-api data-version-listener");
+
+        Connection connection = DriverManager.getConnection(primaryDataSource.getJdbcUrl(), info);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private void poll() {
+        try {
+            if (lastVersion < 0) {
+                // what this node loaded at startup already includes earlier changes
+                Long latest = jdbcTemplate.queryForObject(LATEST_VERSION_SQL, Long.class);
+                lastVersion = latest == null ? 0 : latest;
+                return;
+            }
+
+            Map<DataLayer, Change> changes = new EnumMap<>(DataLayer.class);
+            List<Row> rows;
+            do {
+                rows = jdbcTemplate.query(CHANGES_SQL, (rs, rowNum) -> row(rs), lastVersion, MAX_ROWS_PER_POLL);
+                for (Row row : rows) {
+                    lastVersion = row.version();
+                    DataLayer.fromId(row.layer()).ifPresent(layer -> merge(changes.computeIfAbsent(layer, l -> new Change()), row));
+                }
+            } while (rows.size() == MAX_ROWS_PER_POLL);
+
+            changes.forEach(this::publish);
+        } catch (DataAccessException e) {
+            log.warn("Could not read data versions, retrying in {}: {}", properties.pollInterval(), e.getMessage());
+        }
+        purgeExpired();
+    }
+
+    // every node runs it; once another node has, the delete finds nothing through the changed_at index
+    private void purgeExpired() {
+        if (System.nanoTime() - nextPurge < 0) return;
+        nextPurge = System.nanoTime() + PURGE_INTERVAL.toNanos();
+        try {
+            int purged = jdbcTemplate.update(PURGE_SQL, properties.retention().toSeconds());
+            if (purged > 0) log.debug("Purged {} data versions older than {}", purged, properties.retention());
+        } catch (DataAccessException e) {
+            log.warn("Could not purge data versions, retrying in {}: {}", PURGE_INTERVAL, e.getMessage());
+        }
+    }
+
+    private static Row row(ResultSet rs) throws SQLException {
+        double minLng = rs.getDouble("min_lng");
+        Envelope area = rs.wasNull()
+                ? null
+                : new Envelope(minLng, rs.getDouble("max_lng"), rs.getDouble("min_lat"), rs.getDouble("max_lat"));
+        return new Row(rs.getLong("version"), rs.getString("layer"), area);
+    }
+
+    private static void merge(Change change, Row row) {
+        change.version = row.version();
+        if (change.area == null) return;
+        if (row.area() == null) {
+            change.area = null;
+        } else {
+            change.area.expandToInclude(row.area());
+        }
+    }
+
+    private void publish(DataLayer layer, Change change) {
+        DataChangedEvent event = new DataChangedEvent(layer, change.area, change.version);
+        log.info("{} data changed (up to version {}) in {}, invalidating derived data",
+                layer.id(), change.version, change.area == null ? "the whole layer" : change.area);
+        Counter.builder("montreal.data-version.changes")
+                .description("Data change events published, by layer")
+                .tag("layer", layer.id())
+                .register(meterRegistry)
+                .increment();
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (RuntimeException e) {
+            log.warn("Handling {} failed", event, e);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void closeListenConnection() {
+        Connection connection = listenConnection;
+        listenConnection = null;
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Could not close the data change listener connection", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        // unblocks a pending getNotifications
+        closeListenConnection();
+        thread.interrupt();
+    }
+}
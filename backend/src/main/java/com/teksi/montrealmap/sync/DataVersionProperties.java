@@ -0,0 +1,16 @@
+package com.teksi.montrealmap.sync;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties("montreal.data-version")
+public record DataVersionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("true") boolean listen,
+        @DefaultValue("30s") Duration pollInterval,
+        @DefaultValue("1s") Duration quietPeriod,
+        @DefaultValue("7d") Duration retention
+) {
+}
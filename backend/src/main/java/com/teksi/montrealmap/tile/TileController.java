@@ -0,0 +1,48 @@
+package com.teksi.montrealmap.tile;
+
+import com.teksi.montrealmap.cache.ResponseCompressor;
+import com.teksi.montrealmap.load.Bulkhead;
+import com.teksi.montrealmap.load.EndpointClass;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequiredArgsConstructor
+@Bulkhead(EndpointClass.GEOMETRY)
+@RequestMapping("/api/tiles")
+public class TileController {
+
+    private final TileService tileService;
+    private final TileProperties tileProperties;
+    private final ResponseCompressor responseCompressor;
+
+    @GetMapping("/{layer}/{z}/{x}/{y}")
+    public ResponseEntity<byte[]> getTile(
+            @PathVariable String layer,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        TileLayer tileLayer = TileLayer.fromId(layer)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown tile layer: " + layer));
+
+        if (z < tileProperties.minZoom() || z > tileProperties.maxZoom()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Zoom must be between " + tileProperties.minZoom() + " and " + tileProperties.maxZoom());
+        }
+
+        TileKey key;
+        try {
+            key = new TileKey(z, x, y);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        return responseCompressor.respond(tileService.getTile(tileLayer, key), acceptEncoding);
+    }
+}
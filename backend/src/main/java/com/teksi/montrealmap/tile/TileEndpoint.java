@@ -0,0 +1,50 @@
+package com.teksi.montrealmap.tile;
+
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/tiles}: tile file stats, and {@code POST
+ * /actuator/tiles/{layer}} to invalidate and re-warm tiles after a data load
+ * (optionally only those intersecting a bbox).
+ */
+@Component
+@Endpoint(id = "tiles")
+@RequiredArgsConstructor
+public class TileEndpoint {
+
+    private final TileStore tileStore;
+    private final TileWarmer tileWarmer;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (TileLayer layer : TileLayer.values()) {
+            stats.put(layer.id(), tileStore.stats(layer));
+        }
+        return stats;
+    }
+
+    @WriteOperation
+    public Map<String, Object> invalidate(@Selector String layer,
+                                          @Nullable Double minLng, @Nullable Double minLat,
+                                          @Nullable Double maxLng, @Nullable Double maxLat) {
+        TileLayer tileLayer = TileLayer.fromId(layer)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown tile layer: " + layer));
+
+        Envelope area = minLng == null || minLat == null || maxLng == null || maxLat == null
+                ? null
+                : new Envelope(minLng, maxLng, minLat, maxLat);
+        tileWarmer.onDataLoaded(tileLayer, area);
+        return tileStore.stats(tileLayer);
+    }
+}
@@ -0,0 +1,263 @@
+package com.teksi.montrealmap.tile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All tiles of one layer in a single file, read through memory mappings of its
+ * fixed-size segments. A segment is mapped once the file has grown past it, and
+ * never remapped since the file is only appended to; tiles in the tail, or
+ * across a segment boundary, are read with positioned reads.
+ * <p>
+ * Layout: a fixed header, then tile blobs and index snapshots appended in
+ * write order. The header points at the latest index snapshot ({@code key,
+ * offset, length} entries), which is rewritten on {@link #flush()}. Removed or
+ * replaced tiles leave dead space behind until {@link #compactTo(Path)}.
+ */
+final class TileFile implements Closeable {
+
+    private static final long MAGIC = 0x4D544C54494C4531L; // "MTLTILE1"
+    private static final int HEADER_SIZE = 32;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private record Slot(long offset, int length) {}
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<Long, Slot> index = new ConcurrentHashMap<>();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    // guarded by this
+    private long end;
+    private long liveBytes;
+    private long indexBytes;
+    private boolean dirty;
+
+    private TileFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static TileFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TileFile file = new TileFile(path, channel);
+        file.load();
+        return file;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    private void load() throws IOException {
+        if (channel.size() < HEADER_SIZE || !readIndexSafely()) {
+            channel.truncate(0);
+            writeHeader(0, 0);
+            end = HEADER_SIZE;
+            index.clear();
+            liveBytes = 0;
+        } else {
+            end = channel.size();
+        }
+    }
+
+    private boolean readIndexSafely() {
+        try {
+            return readIndex();
+        } catch (IOException | RuntimeException e) {
+            // a torn or foreign file is discarded and rebuilt
+            index.clear();
+            liveBytes = 0;
+            return false;
+        }
+    }
+
+    private boolean readIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getLong() != MAGIC) return false;
+
+        long indexOffset = header.getLong();
+        int count = header.getInt();
+        indexBytes = (long) count * INDEX_ENTRY_SIZE;
+        if (count == 0) return true;
+
+        ByteBuffer entries = ByteBuffer.allocate(count * INDEX_ENTRY_SIZE);
+        readFully(entries, indexOffset);
+        entries.flip();
+        for (int i = 0; i < count; i++) {
+            Slot slot = new Slot(entries.getLong(8 + i * INDEX_ENTRY_SIZE), entries.getInt(16 + i * INDEX_ENTRY_SIZE));
+            index.put(entries.getLong(i * INDEX_ENTRY_SIZE), slot);
+            liveBytes += slot.length();
+        }
+        return true;
+    }
+
+    Optional<byte[]> read(long key) throws IOException {
+        Slot slot = index.get(key);
+        if (slot == null) return Optional.empty();
+
+        byte[] data = new byte[slot.length()];
+        MappedByteBuffer segment = segmentOf(slot);
+        if (segment != null) {
+            segment.get((int) (slot.offset() % SEGMENT_SIZE), data);
+        } else {
+            readFully(ByteBuffer.wrap(data), slot.offset());
+        }
+        return Optional.of(data);
+    }
+
+    boolean contains(long key) {
+        return index.containsKey(key);
+    }
+
+    Set<Long> keys() {
+        return index.keySet();
+    }
+
+    synchronized void write(long key, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = end;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        Slot previous = index.put(key, new Slot(end, data.length));
+        if (previous != null) liveBytes -= previous.length();
+        liveBytes += data.length;
+        end = position;
+        dirty = true;
+    }
+
+    synchronized boolean remove(long key) {
+        Slot removed = index.remove(key);
+        if (removed == null) return false;
+        liveBytes -= removed.length();
+        dirty = true;
+        return true;
+    }
+
+    synchronized long deadBytes() {
+        return end - HEADER_SIZE - liveBytes - indexBytes;
+    }
+
+    synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Appends an index snapshot and points the header at it.
+     */
+    synchronized void flush() throws IOException {
+        if (!dirty) return;
+
+        ByteBuffer entries = ByteBuffer.allocate(index.size() * INDEX_ENTRY_SIZE);
+        int count = 0;
+        for (Map.Entry<Long, Slot> entry : index.entrySet()) {
+            if (!entries.hasRemaining()) break;
+            entries.putLong(entry.getKey());
+            entries.putLong(entry.getValue().offset());
+            entries.putInt(entry.getValue().length());
+            count++;
+        }
+        entries.flip();
+
+        long indexOffset = end;
+        long position = end;
+        while (entries.hasRemaining()) {
+            position += channel.write(entries, position);
+        }
+        end = position;
+        indexBytes = (long) count * INDEX_ENTRY_SIZE;
+        // the index must be durable before the header points at it
+        channel.force(false);
+        writeHeader(indexOffset, count);
+        channel.force(false);
+        dirty = false;
+    }
+
+    /**
+     * Writes the live tiles to a fresh file at {@code target} and returns it.
+     */
+    synchronized TileFile compactTo(Path target) throws IOException {
+        Files.deleteIfExists(target);
+        TileFile compacted = open(target);
+        for (Long key : index.keySet()) {
+            Optional<byte[]> data = read(key);
+            if (data.isPresent()) compacted.write(key, data.get());
+        }
+        compacted.flush();
+        return compacted;
+    }
+
+    /**
+     * Drops every tile. The file is not truncated, since concurrent readers may
+     * still hold a mapping of it; the space is reclaimed by compaction.
+     */
+    synchronized void clear() {
+        index.clear();
+        liveBytes = 0;
+        dirty = true;
+    }
+
+    private void writeHeader(long indexOffset, int count) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putLong(MAGIC).putLong(indexOffset).putInt(count);
+        header.clear();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    // the mapped segment holding the whole slot, or null when it is in the tail or across a boundary
+    private MappedByteBuffer segmentOf(Slot slot) throws IOException {
+        long segment = slot.offset() / SEGMENT_SIZE;
+        if (slot.length() == 0 || (slot.offset() + slot.length() - 1) / SEGMENT_SIZE != segment) return null;
+
+        MappedByteBuffer[] mapped = segments;
+        if (segment < mapped.length) return mapped[(int) segment];
+        if (segment >= channel.size() / SEGMENT_SIZE) return null;
+        return mapSegments()[(int) segment];
+    }
+
+    private synchronized MappedByteBuffer[] mapSegments() throws IOException {
+        MappedByteBuffer[] mapped = segments;
+        int complete = (int) (channel.size() / SEGMENT_SIZE);
+        if (complete <= mapped.length) return mapped;
+
+        MappedByteBuffer[] grown = Arrays.copyOf(mapped, complete);
+        for (int i = mapped.length; i < complete; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_ONLY, i * SEGMENT_SIZE, SEGMENT_SIZE);
+        }
+        segments = grown;
+        return grown;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of tile file " + path);
+            position += read;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
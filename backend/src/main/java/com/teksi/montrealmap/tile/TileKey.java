@@ -0,0 +1,86 @@
+package com.teksi.montrealmap.tile;
+
+import com.teksi.montrealmap.cache.SpatialKey;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Web Mercator (XYZ / slippy map) tile address.
+ */
+public record TileKey(int z, int x, int y) implements SpatialKey {
+
+    private static final int MAX_ZOOM = 24;
+    private static final int COORD_BITS = 24;
+    private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+
+    public TileKey {
+        if (z < 0 || z > MAX_ZOOM) throw new IllegalArgumentException("Zoom out of range: " + z);
+        int n = 1 << z;
+        if (x < 0 || x >= n || y < 0 || y >= n) {
+            throw new IllegalArgumentException("Tile out of range: " + z + "/" + x + "/" + y);
+        }
+    }
+
+    public long pack() {
+        return (long) z << (2 * COORD_BITS) | (long) x << COORD_BITS | y;
+    }
+
+    public static TileKey unpack(long packed) {
+        return new TileKey(
+                (int) (packed >>> (2 * COORD_BITS)),
+                (int) ((packed >>> COORD_BITS) & COORD_MASK),
+                (int) (packed & COORD_MASK));
+    }
+
+    /**
+     * The tile bounds in WGS84 longitude/latitude.
+     */
+    @Override
+    public Envelope bounds() {
+        double n = 1 << z;
+        return new Envelope(
+                x / n * 360.0 - 180.0,
+                (x + 1) / n * 360.0 - 180.0,
+                latitude(y + 1, n),
+                latitude(y, n));
+    }
+
+    /**
+     * All tiles of zoom {@code z} intersecting {@code area} (WGS84).
+     */
+    public static List<TileKey> covering(Envelope area, int z) {
+        int max = (1 << z) - 1;
+        int minX = clamp(tileX(area.getMinX(), z), max);
+        int maxX = clamp(tileX(area.getMaxX(), z), max);
+        // tile rows grow southwards
+        int minY = clamp(tileY(area.getMaxY(), z), max);
+        int maxY = clamp(tileY(area.getMinY(), z), max);
+
+        List<TileKey> tiles = new ArrayList<>((maxX - minX + 1) * (maxY - minY + 1));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                tiles.add(new TileKey(z, x, y));
+            }
+        }
+        return tiles;
+    }
+
+    private static double latitude(int y, double n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+    }
+
+    private static int tileX(double lng, int z) {
+        return (int) Math.floor((lng + 180.0) / 360.0 * (1 << z));
+    }
+
+    private static int tileY(double lat, int z) {
+        double rad = Math.toRadians(lat);
+        return (int) Math.floor((1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2 * (1 << z));
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+}
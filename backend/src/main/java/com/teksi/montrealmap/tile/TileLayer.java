@@ -0,0 +1,23 @@
+package com.teksi.montrealmap.tile;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum TileLayer {
+    BUILDINGS("buildings"),
+    ZONAGE("zonage");
+
+    private final String id;
+
+    TileLayer(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public static Optional<TileLayer> fromId(String id) {
+        return Arrays.stream(values()).filter(layer -> layer.id.equals(id)).findFirst();
+    }
+}
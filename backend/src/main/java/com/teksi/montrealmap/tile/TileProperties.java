@@ -0,0 +1,31 @@
+package com.teksi.montrealmap.tile;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+@ConfigurationProperties("montreal.tiles")
+public record TileProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("tiles") Path directory,
+        @DefaultValue("10") int minZoom,
+        @DefaultValue("16") int maxZoom,
+        @DefaultValue("15") int polygonMinZoom,
+        @DefaultValue("13") int centroidMinZoom,
+        @DefaultValue("true") boolean warm,
+        @DefaultValue("13") int warmMinZoom,
+        @DefaultValue("14") int warmMaxZoom,
+        @DefaultValue Extent extent
+) {
+
+    /**
+     * Area pre-rendered by the warmer; defaults to the island of Montreal.
+     */
+    public record Extent(
+            @DefaultValue("-73.98") double minLng,
+            @DefaultValue("45.40") double minLat,
+            @DefaultValue("-73.47") double maxLng,
+            @DefaultValue("45.71") double maxLat
+    ) {}
+}
@@ -0,0 +1,93 @@
+package com.teksi.montrealmap.tile;
+
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import com.teksi.montrealmap.building.service.BuildingService;
+import com.teksi.montrealmap.cache.ResponseCache;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.load.LevelOfDetail;
+import com.teksi.montrealmap.load.RequestCostEstimator;
+import com.teksi.montrealmap.zonage.service.ZonageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class TileService {
+
+    private final TileStore tileStore;
+    private final BuildingService buildingService;
+    private final ZonageService zonageService;
+    private final ResponseCache responseCache;
+    private final RequestCostEstimator costEstimator;
+    private final TileProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public SerializedResponse getTile(TileLayer layer, TileKey key) {
+        tileStore.recordRequest(layer, key);
+        // hot tiles stay in memory with their compressed variants
+        return responseCache.get("tiles." + layer.id(), key, () -> SerializedResponse.of(load(layer, key)));
+    }
+
+    /**
+     * Drops the in-memory copies of the layer's tiles and of the searches they
+     * are rendered from intersecting {@code area} (all when null), e.g. after a
+     * data load.
+     */
+    public void evictCached(TileLayer layer, @Nullable Envelope area) {
+        responseCache.invalidate("tiles." + layer.id(), area);
+        responseCache.invalidate(layer.id() + ".", area);
+    }
+
+    private byte[] load(TileLayer layer, TileKey key) {
+        Optional<byte[]> stored = tileStore.get(layer, key);
+        if (stored.isPresent()) {
+            counter(layer, "hit").increment();
+            return stored.get();
+        }
+
+        counter(layer, "miss").increment();
+        long generation = tileStore.generation(layer);
+        byte[] rendered = render(layer, key);
+        tileStore.put(layer, key, rendered, generation);
+        return rendered;
+    }
+
+    /**
+     * Renders a tile as a GeoJSON FeatureCollection of the layer's features
+     * intersecting the tile bounds, whole: a feature across a tile edge is in
+     * both tiles.
+     */
+    byte[] render(TileLayer layer, TileKey key) {
+        Envelope b = key.bounds();
+        return switch (layer) {
+            case BUILDINGS -> buildingService.renderTile(b, buildingLevelOfDetail(key));
+            case ZONAGE -> zonageService.searchGeoJson(b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY()).json();
+        };
+    }
+
+    // by zoom, so a low-zoom tile covering much of the city never loads its polygons;
+    // the estimate coarsens it further where the tile is unusually dense
+    private LevelOfDetail buildingLevelOfDetail(TileKey key) {
+        LevelOfDetail finest = key.z() >= properties.polygonMinZoom() ? LevelOfDetail.POLYGONS
+                : key.z() >= properties.centroidMinZoom() ? LevelOfDetail.CENTROIDS
+                : LevelOfDetail.AGGREGATES;
+        Envelope b = key.bounds();
+        return costEstimator.buildingLevelOfDetail(new BuildingSearchRequest(
+                b.getMinX(), b.getMinY(), b.getMaxX(), b.getMaxY(),
+                null, null, null, null, null, null
+        ), finest);
+    }
+
+    private Counter counter(TileLayer layer, String result) {
+        return Counter.builder("montreal.tiles.requests")
+                .tag("layer", layer.id())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,204 @@
+package com.teksi.montrealmap.tile;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendered tiles per layer, persisted in one {@link TileFile} each, plus
+ * per-tile request counts used to decide what to warm first.
+ * <p>
+ * Each layer has a generation, bumped by every invalidation. A tile is stored
+ * with the generation read before rendering it, and dropped if an invalidation
+ * came in between, since it may have been rendered from the old data.
+ */
+@Slf4j
+@Component
+public class TileStore {
+
+    // heat is only a hint; stop tracking new tiles past this many per layer
+    private static final int MAX_TRACKED_TILES = 100_000;
+    private static final long COMPACTION_MIN_DEAD_BYTES = 16L * 1024 * 1024;
+
+    private final TileProperties properties;
+    private final Map<TileLayer, TileFile> files = new ConcurrentHashMap<>();
+    private final Map<TileLayer, Map<Long, LongAdder>> heat = new ConcurrentHashMap<>();
+    private final Map<TileLayer, AtomicLong> generations = new ConcurrentHashMap<>();
+    // held to flush, compact or invalidate a layer's file, which the scheduler and the warmer both do
+    private final Map<TileLayer, Object> maintenanceLocks = new ConcurrentHashMap<>();
+
+    public TileStore(TileProperties properties) {
+        this.properties = properties;
+        for (TileLayer layer : TileLayer.values()) {
+            heat.put(layer, new ConcurrentHashMap<>());
+            generations.put(layer, new AtomicLong());
+            maintenanceLocks.put(layer, new Object());
+        }
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!properties.enabled()) return;
+
+        Files.createDirectories(properties.directory());
+        for (TileLayer layer : TileLayer.values()) {
+            files.put(layer, TileFile.open(fileFor(layer)));
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        files.forEach((layer, file) -> {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("Could not close tile file for layer {}", layer.id(), e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return !files.isEmpty();
+    }
+
+    public Optional<byte[]> get(TileLayer layer, TileKey key) {
+        TileFile file = files.get(layer);
+        if (file == null) return Optional.empty();
+        try {
+            return file.read(key.pack());
+        } catch (IOException e) {
+            log.warn("Could not read tile {} {}", layer.id(), key, e);
+            return Optional.empty();
+        }
+    }
+
+    public boolean contains(TileLayer layer, TileKey key) {
+        TileFile file = files.get(layer);
+        return file != null && file.contains(key.pack());
+    }
+
+    /**
+     * The layer's current generation, to read before rendering a tile passed
+     * to {@link #put}.
+     */
+    public long generation(TileLayer layer) {
+        return generations.get(layer).get();
+    }
+
+    /**
+     * Stores a tile rendered after reading {@code generation}, unless the layer
+     * was invalidated since.
+     */
+    public void put(TileLayer layer, TileKey key, byte[] data, long generation) {
+        TileFile file = files.get(layer);
+        if (file == null || generation(layer) != generation) return;
+        try {
+            file.write(key.pack(), data);
+            // an invalidation between the check and the write may have missed it
+            if (generation(layer) != generation) file.remove(key.pack());
+        } catch (IOException e) {
+            log.warn("Could not store tile {} {}", layer.id(), key, e);
+        }
+    }
+
+    /**
+     * Removes the stored tiles intersecting {@code area} (all tiles when null)
+     * and returns them.
+     */
+    public List<TileKey> invalidate(TileLayer layer, Envelope area) {
+        generations.get(layer).incrementAndGet();
+        List<TileKey> removed = new ArrayList<>();
+        // not while a compaction copies the tiles, which would bring them back
+        synchronized (maintenanceLocks.get(layer)) {
+            TileFile file = files.get(layer);
+            if (file == null) return removed;
+
+            for (Long packed : file.keys()) {
+                TileKey key = TileKey.unpack(packed);
+                if ((area == null || area.intersects(key.bounds())) && file.remove(packed)) {
+                    removed.add(key);
+                }
+            }
+        }
+        return removed;
+    }
+
+    public void recordRequest(TileLayer layer, TileKey key) {
+        Map<Long, LongAdder> counts = heat.get(layer);
+        LongAdder count = counts.get(key.pack());
+        if (count == null) {
+            if (counts.size() >= MAX_TRACKED_TILES) return;
+            count = counts.computeIfAbsent(key.pack(), k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    public long heat(TileLayer layer, TileKey key) {
+        LongAdder count = heat.get(layer).get(key.pack());
+        return count == null ? 0 : count.sum();
+    }
+
+    public List<TileKey> hotTiles(TileLayer layer) {
+        return heat.get(layer).keySet().stream().map(TileKey::unpack).toList();
+    }
+
+    public Map<String, Object> stats(TileLayer layer) {
+        TileFile file = files.get(layer);
+        if (file == null) return Map.of("enabled", false);
+        return Map.of(
+                "enabled", true,
+                "tiles", file.keys().size(),
+                "liveBytes", file.liveBytes(),
+                "deadBytes", file.deadBytes());
+    }
+
+    @Scheduled(fixedDelayString = "${montreal.tiles.flush-interval:1m}")
+    public void flush() {
+        for (TileLayer layer : TileLayer.values()) {
+            synchronized (maintenanceLocks.get(layer)) {
+                // read under the lock: a compaction that ran meanwhile has closed the file seen before it
+                TileFile file = files.get(layer);
+                if (file == null) continue;
+                try {
+                    file.flush();
+                    if (file.deadBytes() > COMPACTION_MIN_DEAD_BYTES && file.deadBytes() > file.liveBytes()) {
+                        compact(layer, file);
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not flush tile file for layer {}", layer.id(), e);
+                }
+            }
+        }
+    }
+
+    // called with the layer's maintenance lock held
+    private void compact(TileLayer layer, TileFile file) throws IOException {
+        Path target = fileFor(layer);
+        Path temp = target.resolveSibling(target.getFileName() + ".compact");
+        TileFile compacted = file.compactTo(temp);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        files.put(layer, compacted);
+        // tiles written to the old file after the copy are lost; they are re-rendered on demand
+        file.close();
+        log.info("Compacted tile file for layer {} to {} bytes", layer.id(), compacted.liveBytes());
+    }
+
+    private Path fileFor(TileLayer layer) {
+        return properties.directory().resolve(layer.id() + ".tiles");
+    }
+}
@@ -0,0 +1,116 @@
+package com.teksi.montrealmap.tile;
+
+import com.teksi.montrealmap.sync.DataChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pre-renders tiles in the background so users do not pay for cold tiles after
+ * a deploy or a data reload. Tiles are rendered hottest first (most requested),
+ * then by ascending zoom.
+ */
+@Slf4j
+@Component
+public class TileWarmer {
+
+    private final TileStore tileStore;
+    private final TileService tileService;
+    private final TileProperties properties;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tile-warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TileWarmer(TileStore tileStore, TileService tileService, TileProperties properties) {
+        this.tileStore = tileStore;
+        this.tileService = tileService;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        for (TileLayer layer : TileLayer.values()) {
+            schedule(layer, null);
+        }
+    }
+
+    /**
+     * Drops the stored tiles intersecting {@code changedArea} (the whole layer
+     * when null) and re-renders them in the background.
+     */
+    public void onDataLoaded(TileLayer layer, @Nullable Envelope changedArea) {
+        tileService.evictCached(layer, changedArea);
+        if (!tileStore.isEnabled()) return;
+
+        List<TileKey> removed = tileStore.invalidate(layer, changedArea);
+        log.info("Invalidated {} {} tiles", removed.size(), layer.id());
+        schedule(layer, changedArea);
+    }
+
+    @EventListener
+    public void onDataChanged(DataChangedEvent event) {
+        TileLayer.fromId(event.layer().id()).ifPresent(layer -> onDataLoaded(layer, event.area()));
+    }
+
+    private void schedule(TileLayer layer, Envelope area) {
+        if (!tileStore.isEnabled() || !properties.warm()) return;
+        executor.submit(() -> warm(layer, area));
+    }
+
+    private void warm(TileLayer layer, Envelope area) {
+        TileProperties.Extent e = properties.extent();
+        Envelope target = new Envelope(e.minLng(), e.maxLng(), e.minLat(), e.maxLat());
+        if (area != null) target = target.intersection(area);
+        if (target.isNull()) return;
+
+        Set<TileKey> candidates = new LinkedHashSet<>();
+        for (TileKey hot : tileStore.hotTiles(layer)) {
+            if (hot.z() <= properties.maxZoom() && target.intersects(hot.bounds())) candidates.add(hot);
+        }
+        for (int z = Math.max(properties.minZoom(), properties.warmMinZoom()); z <= properties.warmMaxZoom(); z++) {
+            candidates.addAll(TileKey.covering(target, z));
+        }
+
+        List<TileKey> pending = candidates.stream()
+                .filter(key -> !tileStore.contains(layer, key))
+                .sorted(Comparator.comparingLong((TileKey key) -> tileStore.heat(layer, key)).reversed()
+                        .thenComparingInt(TileKey::z))
+                .toList();
+
+        long start = System.nanoTime();
+        int rendered = 0;
+        for (TileKey key : pending) {
+            if (Thread.currentThread().isInterrupted()) return;
+            // a request may have rendered it meanwhile
+            if (tileStore.contains(layer, key)) continue;
+            try {
+                long generation = tileStore.generation(layer);
+                tileStore.put(layer, key, tileService.render(layer, key), generation);
+                rendered++;
+            } catch (RuntimeException ex) {
+                log.warn("Could not warm tile {} {}, stopping this pass", layer.id(), key, ex);
+                break;
+            }
+        }
+        tileStore.flush();
+        log.info("Warmed {} {} tiles in {} ms", rendered, layer.id(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,34 +1,62 @@
 package com.teksi.montrealmap.zonage.controller;
 
-import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.cache.ResponseCompressor;
+import com.teksi.montrealmap.load.Bulkhead;
+import com.teksi.montrealmap.load.EndpointClass;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJsonWriter;
 import com.teksi.montrealmap.zonage.dto.ZonageResponse;
 import com.teksi.montrealmap.zonage.service.ZonageService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/zonage")
 public class ZonageController {
 
     private final ZonageService zonageService;
+    private final ResponseCompressor responseCompressor;
+    private final ProgressiveGeoJsonWriter progressiveWriter;
 
     @GetMapping("/at-point")
-    public ZonageResponse getAtPoint(
+    @Bulkhead(EndpointClass.LOOKUP)
+    public ResponseEntity<ZonageResponse> getAtPoint(
             @RequestParam double lng,
             @RequestParam double lat
     ) {
-        return zonageService.getAtPoint(lng, lat);
+        return zonageService.getAtPoint(lng, lat)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/search/geojson")
-    public GeoJson.FeatureCollection searchGeoJson(
+    @Bulkhead(EndpointClass.GEOMETRY)
+    public ResponseEntity<byte[]> searchGeoJson(
             @RequestParam double minLng,
             @RequestParam double minLat,
             @RequestParam double maxLng,
-            @RequestParam double maxLat
+            @RequestParam double maxLat,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        return zonageService.searchGeoJson(minLng, minLat, maxLng, maxLat);
+        return responseCompressor.respond(zonageService.searchGeoJson(minLng, minLat, maxLng, maxLat), acceptEncoding);
+    }
+
+    @GetMapping(value = "/search/geojson", params = "progressive=true")
+    @Bulkhead(EndpointClass.GEOMETRY)
+    public void searchGeoJsonProgressive(
+            @RequestParam double minLng,
+            @RequestParam double minLat,
+            @RequestParam double maxLng,
+            @RequestParam double maxLat,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        progressiveWriter.write(zonageService.progressiveGeoJson(minLng, minLat, maxLng, maxLat), acceptEncoding, response);
     }
 }
 
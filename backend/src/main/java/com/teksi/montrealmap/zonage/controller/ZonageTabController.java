@@ -1,5 +1,7 @@
 package com.teksi.montrealmap.zonage.controller;
 
+import com.teksi.montrealmap.load.Bulkhead;
+import com.teksi.montrealmap.load.EndpointClass;
 import com.teksi.montrealmap.zonage.dto.ZonageTabCodeResponse;
 import com.teksi.montrealmap.zonage.service.ZonageTabService;
 import lombok.RequiredArgsConstructor;
@@ -14,6 +16,7 @@ public class ZonageTabController {
     private final ZonageTabService zonageTabService;
 
     @GetMapping("/at-point")
+    @Bulkhead(EndpointClass.LOOKUP)
     public ResponseEntity<ZonageTabCodeResponse> atPoint(
             @RequestParam double lng,
             @RequestParam double lat
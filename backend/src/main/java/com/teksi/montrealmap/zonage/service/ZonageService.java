@@ -1,10 +1,19 @@
 package com.teksi.montrealmap.zonage.service;
 
-import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJson;
 import com.teksi.montrealmap.zonage.dto.ZonageResponse;
 
+import java.util.Optional;
+
 public interface ZonageService {
-    ZonageResponse getAtPoint(double lng, double lat);
-    GeoJson.FeatureCollection searchGeoJson(double minLng, double minLat, double maxLng, double maxLat);
+    Optional<ZonageResponse> getAtPoint(double lng, double lat);
+    SerializedResponse searchGeoJson(double minLng, double minLat, double maxLng, double maxLat);
+
+    /**
+     * Zones as a progressive response: simplified outlines first, then the
+     * full geometry in chunks.
+     */
+    ProgressiveGeoJson progressiveGeoJson(double minLng, double minLat, double maxLng, double maxLat);
 }
 
@@ -1,47 +1,122 @@
 package com.teksi.montrealmap.zonage.service;
 
+import com.teksi.montrealmap.cache.RequestCoalescer;
+import com.teksi.montrealmap.cache.ResponseCache;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.cache.SpatialKey;
 import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.profiling.GeometryProfile;
+import com.teksi.montrealmap.progressive.ProgressiveGeoJson;
+import com.teksi.montrealmap.progressive.ProgressiveProperties;
 import com.teksi.montrealmap.zonage.dto.ZonageResponse;
 import com.teksi.montrealmap.zonage.entity.Zonage;
 import com.teksi.montrealmap.zonage.repository.ZonageRepository;
 import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class ZonageServiceImpl implements ZonageService {
 
     private final ZonageRepository zonageRepository;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCache responseCache;
+    private final JsonMapper jsonMapper;
+    private final ProgressiveProperties progressiveProperties;
+
+    private record BboxKey(double minLng, double minLat, double maxLng, double maxLat) implements SpatialKey {
+        // adding 0.0 turns -0.0 into 0.0, which records otherwise treat as different
+        static BboxKey of(double minLng, double minLat, double maxLng, double maxLat) {
+            return new BboxKey(minLng + 0.0, minLat + 0.0, maxLng + 0.0, maxLat + 0.0);
+        }
+
+        @Override
+        public Envelope bounds() {
+            return new Envelope(minLng, maxLng, minLat, maxLat);
+        }
+    }
 
     @Override
-    public ZonageResponse getAtPoint(double lng, double lat) {
-        Zonage z = zonageRepository.findAtPoint(lng, lat)
-                .orElseThrow(() -> new IllegalArgumentException("No zonage found for point"));
+    public Optional<ZonageResponse> getAtPoint(double lng, double lat) {
+        return zonageRepository.findAtPoint(lng, lat).map(this::toDto);
+    }
 
-        return toDto(z);
+    @Override
+    public SerializedResponse searchGeoJson(double minLng, double minLat, double maxLng, double maxLat) {
+        BboxKey key = BboxKey.of(minLng, minLat, maxLng, maxLat);
+        return responseCache.get("zonage.searchGeoJson", key, () -> requestCoalescer.execute("zonage.searchGeoJson", key, () -> {
+            try (GeometryProfile.Scope ignored = GeometryProfile.open("zonage.searchGeoJson", key.bounds())) {
+                List<Zonage> zones = fetchZones(minLng, minLat, maxLng, maxLat);
+                Cancellation.current().throwIfCancelled("serialization");
+
+                List<GeoJson.Feature> features = GeometryProfile.conversion(() -> zones.stream()
+                        .map(this::toGeoFeature)
+                        .toList());
+
+                return SerializedResponse.of(GeometryProfile.serialization(features.size(),
+                        () -> GeometryProfile.vertices(features),
+                        () -> jsonMapper.writeValueAsBytes(GeoJson.FeatureCollection.of(features))));
+            }
+        }));
     }
 
+    // not cached: the zones are loaded once and converted chunk by chunk as they are written,
+    // so only the loading is shared between identical requests
     @Override
-    public GeoJson.FeatureCollection searchGeoJson(double minLng, double minLat, double maxLng, double maxLat) {
-        List<Zonage> zones = zonageRepository.searchInBbox(minLng, minLat, maxLng, maxLat);
+    public ProgressiveGeoJson progressiveGeoJson(double minLng, double minLat, double maxLng, double maxLat) {
+        BboxKey key = BboxKey.of(minLng, minLat, maxLng, maxLat);
+        return requestCoalescer.execute("zonage.progressiveGeoJson", key, () -> {
+            Envelope bbox = key.bounds();
+            List<Zonage> zones = fetchZones(minLng, minLat, maxLng, maxLat);
+
+            // about one pixel when the viewport is coarseResolution pixels across
+            double tolerance = Math.max(bbox.getWidth(), bbox.getHeight()) / progressiveProperties.coarseResolution();
+            List<GeoJson.Feature> simplified = GeometryProfile.conversion(() -> zones.stream()
+                    .map(z -> toGeoFeature(z, simplify(z.getGeom(), tolerance)))
+                    .toList());
+
+            return ProgressiveGeoJson.of(bbox, simplified, zones,
+                    z -> z.getGeom() != null ? z.getGeom().getEnvelopeInternal() : new Envelope(),
+                    this::toGeoFeature,
+                    progressiveProperties.chunkSize());
+        });
+    }
 
-        List<GeoJson.Feature> features = zones.stream()
-                .map(this::toGeoFeature)
-                .toList();
+    private List<Zonage> fetchZones(double minLng, double minLat, double maxLng, double maxLat) {
+        return GeometryProfile.hydration(
+                () -> zonageRepository.searchInBbox(minLng, minLat, maxLng, maxLat),
+                loaded -> loaded.stream().map(Zonage::getGeom).filter(Objects::nonNull).mapToLong(Geometry::getNumPoints).sum());
+    }
 
-        return GeoJson.FeatureCollection.of(features);
+    private static MultiPolygon simplify(MultiPolygon mp, double tolerance) {
+        if (mp == null || !(tolerance > 0)) return mp;
+        // keeps rings valid and the geometry type, so zones don't collapse or overlap
+        return TopologyPreservingSimplifier.simplify(mp, tolerance) instanceof MultiPolygon simplified ? simplified : mp;
     }
 
     private GeoJson.Feature toGeoFeature(Zonage z) {
-        GeoJson.Geometry geometry = toGeoJsonGeometry(z.getGeom());
+        return toGeoFeature(z, z.getGeom());
+    }
+
+    private GeoJson.Feature toGeoFeature(Zonage z, MultiPolygon geom) {
+        GeoJson.Geometry geometry = toGeoJsonGeometry(geom);
 
         Map<String, Object> props = new LinkedHashMap<>();
         props.put("zoneCode", z.getZoneCode());
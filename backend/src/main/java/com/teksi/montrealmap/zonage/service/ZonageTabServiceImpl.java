@@ -4,11 +4,13 @@ import com.teksi.montrealmap.zonage.dto.ZonageTabCodeResponse;
 import com.teksi.montrealmap.zonage.repository.RawZonageTabRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class ZonageTabServiceImpl implements ZonageTabService {
 
     private final RawZonageTabRepository rawRepo;
@@ -0,0 +1,95 @@
+-- Every committed change to a data table appends a row here and notifies the
+-- data_changed channel. Each backend node listens on that channel (polling this
+-- table as a fallback) and invalidates its caches for the changed layer and area.
+-- The nodes also purge rows older than montreal.data-version.retention, so that
+-- writes to the data tables do not pay for it.
+CREATE TABLE data_version (
+                              version    BIGSERIAL PRIMARY KEY,
+                              layer      TEXT NOT NULL,
+    -- extent of the changed rows; null when unknown (truncate, reload), meaning the whole layer
+                              min_lng    DOUBLE PRECISION,
+                              min_lat    DOUBLE PRECISION,
+                              max_lng    DOUBLE PRECISION,
+                              max_lat    DOUBLE PRECISION,
+                              changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX data_version_changed_at_idx ON data_version (changed_at);
+
+
+CREATE FUNCTION bump_data_version(p_layer TEXT, p_extent BOX2D) RETURNS BIGINT AS $$
+DECLARE
+    v_version BIGINT;
+BEGIN
+    -- held until commit, so versions become visible in increasing order and a
+    -- node that has seen version n has seen everything before it
+    PERFORM pg_advisory_xact_lock(hashtext('data_version'));
+
+    INSERT INTO data_version (layer, min_lng, min_lat, max_lng, max_lat)
+    VALUES (p_layer, ST_XMin(p_extent), ST_YMin(p_extent), ST_XMax(p_extent), ST_YMax(p_extent))
+    RETURNING version INTO v_version;
+
+    -- delivered on commit
+    PERFORM pg_notify('data_changed', v_version::TEXT);
+    RETURN v_version;
+END
+$$ LANGUAGE plpgsql;
+
+
+-- statement-level: one version per statement, covering the extent of all rows it touched
+CREATE FUNCTION data_version_changed() RETURNS TRIGGER AS $$
+DECLARE
+    v_layer  TEXT := TG_ARGV[0];
+    v_geom   TEXT := TG_ARGV[1];
+    v_rows   BIGINT;
+    v_extent BOX2D;
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM bump_data_version(v_layer, NULL);
+        RETURN NULL;
+    ELSIF TG_OP = 'INSERT' THEN
+        EXECUTE format('SELECT count(*), ST_Extent(%I) FROM new_rows', v_geom) INTO v_rows, v_extent;
+    ELSIF TG_OP = 'DELETE' THEN
+        EXECUTE format('SELECT count(*), ST_Extent(%I) FROM old_rows', v_geom) INTO v_rows, v_extent;
+    ELSE
+        -- a moved geometry changes both its old and its new area
+        EXECUTE format('SELECT count(*), ST_Extent(g) FROM (SELECT %1$I AS g FROM old_rows UNION ALL SELECT %1$I FROM new_rows) changed', v_geom)
+            INTO v_rows, v_extent;
+    END IF;
+
+    -- rows without geometry give no extent and invalidate the whole layer
+    IF v_rows > 0 THEN
+        PERFORM bump_data_version(v_layer, v_extent);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+
+-- (Re)creates the triggers of a data table. Tables that are dropped and
+-- recreated by a data load (e.g. raw.raw_zonage_tab, see scripts/populate-db.sh)
+-- must call it again afterwards; the call also invalidates the whole layer.
+CREATE FUNCTION track_data_version(p_table REGCLASS, p_layer TEXT, p_geom_column TEXT) RETURNS VOID AS $$
+BEGIN
+    EXECUTE format('DROP TRIGGER IF EXISTS data_version_insert ON %s', p_table);
+    EXECUTE format('DROP TRIGGER IF EXISTS data_version_update ON %s', p_table);
+    EXECUTE format('DROP TRIGGER IF EXISTS data_version_delete ON %s', p_table);
+    EXECUTE format('DROP TRIGGER IF EXISTS data_version_truncate ON %s', p_table);
+
+    EXECUTE format('CREATE TRIGGER data_version_insert AFTER INSERT ON %s REFERENCING NEW TABLE AS new_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION data_version_changed(%L, %L)', p_table, p_layer, p_geom_column);
+    EXECUTE format('CREATE TRIGGER data_version_update AFTER UPDATE ON %s REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION data_version_changed(%L, %L)', p_table, p_layer, p_geom_column);
+    EXECUTE format('CREATE TRIGGER data_version_delete AFTER DELETE ON %s REFERENCING OLD TABLE AS old_rows '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION data_version_changed(%L, %L)', p_table, p_layer, p_geom_column);
+    EXECUTE format('CREATE TRIGGER data_version_truncate AFTER TRUNCATE ON %s '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION data_version_changed(%L, %L)', p_table, p_layer, p_geom_column);
+
+    PERFORM bump_data_version(p_layer, NULL);
+END
+$$ LANGUAGE plpgsql;
+
+
+SELECT track_data_version('public.buildings', 'buildings', 'geom');
+SELECT track_data_version('public.zonage', 'zonage', 'geom');
+SELECT track_data_version('raw.raw_zonage_tab', 'zonage-tab', 'wkb_geometry');
@@ -0,0 +1,135 @@
+-- Rows of the data tables are kept in the order of a Hilbert curve over their
+-- bbox centers, so a bbox query reads its rows from a few neighbouring heap pages
+-- instead of pages scattered over the table in insertion order.
+
+-- Position of (x, y) along a Hilbert curve of order 24 over the whole lng/lat
+-- range (cells of about 2 m); null for a null point.
+CREATE FUNCTION hilbert_key(p_lng DOUBLE PRECISION, p_lat DOUBLE PRECISION) RETURNS BIGINT AS $$
+DECLARE
+    v_side CONSTANT BIGINT := 16777216;
+    v_x    BIGINT := least(greatest(floor((p_lng + 180) / 360 * v_side), 0), v_side - 1);
+    v_y    BIGINT := least(greatest(floor((p_lat + 90) / 180 * v_side), 0), v_side - 1);
+    v_s    BIGINT := v_side / 2;
+    v_rx   BIGINT;
+    v_ry   BIGINT;
+    v_t    BIGINT;
+    v_key  BIGINT := 0;
+BEGIN
+    WHILE v_s > 0 LOOP
+        v_rx := CASE WHEN v_x & v_s > 0 THEN 1 ELSE 0 END;
+        v_ry := CASE WHEN v_y & v_s > 0 THEN 1 ELSE 0 END;
+        v_key := v_key + v_s * v_s * ((3 * v_rx) # v_ry);
+        -- rotate the quadrant so the curve stays continuous
+        IF v_ry = 0 THEN
+            IF v_rx = 1 THEN
+                v_x := v_side - 1 - v_x;
+                v_y := v_side - 1 - v_y;
+            END IF;
+            v_t := v_x;
+            v_x := v_y;
+            v_y := v_t;
+        END IF;
+        v_s := v_s / 2;
+    END LOOP;
+    RETURN v_key;
+END
+$$ LANGUAGE plpgsql IMMUTABLE STRICT PARALLEL SAFE;
+
+CREATE FUNCTION hilbert_key(p_geom geometry) RETURNS BIGINT AS $$
+    SELECT hilbert_key((ST_XMin(p_geom) + ST_XMax(p_geom)) / 2, (ST_YMin(p_geom) + ST_YMax(p_geom)) / 2)
+$$ LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE;
+
+
+ALTER TABLE buildings ADD COLUMN sort_key BIGINT GENERATED ALWAYS AS (hilbert_key(geom)) STORED;
+ALTER TABLE zonage ADD COLUMN sort_key BIGINT GENERATED ALWAYS AS (hilbert_key(geom)) STORED;
+
+-- a few kB: one range summary per 32 pages, tight once the table is in key order
+CREATE INDEX buildings_sort_key_brin ON buildings USING BRIN (sort_key) WITH (pages_per_range = 32);
+CREATE INDEX zonage_sort_key_brin ON zonage USING BRIN (sort_key) WITH (pages_per_range = 32);
+
+
+-- Rewrites a table in sort_key order. Unlike CLUSTER, reads go on while the
+-- copy is made: the table is only locked against writes (SHARE), then for the
+-- swap itself. Indexes, constraints, defaults, triggers and owned sequences
+-- carry over (identity columns and grants do not; the data tables have none).
+-- Returns false without doing anything when another session is already
+-- rewriting the table. p_lock_timeout bounds the wait for each lock; when it
+-- expires the rewrite fails and the table is left as it was.
+CREATE FUNCTION recluster_by_sort_key(p_table REGCLASS, p_lock_timeout INTERVAL DEFAULT '5s') RETURNS BOOLEAN AS $$
+DECLARE
+    v_schema   TEXT;
+    v_name     TEXT;
+    v_new      TEXT;
+    v_columns  TEXT;
+    v_indexes  JSONB;
+    v_triggers TEXT[];
+    v_trigger  TEXT;
+    r          RECORD;
+BEGIN
+    -- OIDs are unsigned 32-bit: shifted into the int range rather than cast, which fails past 2^31
+    IF NOT pg_try_advisory_xact_lock(hashtext('recluster_by_sort_key'), (p_table::OID::BIGINT - 2147483648)::INT) THEN
+        RETURN FALSE;
+    END IF;
+    PERFORM set_config('lock_timeout', (extract(epoch FROM p_lock_timeout) * 1000)::BIGINT::TEXT, TRUE);
+
+    SELECT n.nspname, c.relname INTO v_schema, v_name
+    FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+    WHERE c.oid = p_table;
+    v_new := v_name || '_reordered';
+
+    EXECUTE format('LOCK TABLE %s IN SHARE MODE', p_table);
+
+    -- generated columns (sort_key itself) are computed again on insert
+    SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO v_columns
+    FROM pg_attribute
+    WHERE attrelid = p_table AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+
+    EXECUTE format('CREATE TABLE %I.%I (LIKE %s INCLUDING ALL)', v_schema, v_new, p_table);
+    EXECUTE format('INSERT INTO %I.%I (%s) SELECT %s FROM %s ORDER BY sort_key', v_schema, v_new, v_columns, v_columns, p_table);
+
+    -- LIKE names the copied indexes after the new table; matched by definition to rename them back
+    SELECT coalesce(jsonb_object_agg(substring(pg_get_indexdef(i.indexrelid) FROM ' USING .*$'), c.relname), '{}')
+    INTO v_indexes
+    FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+    WHERE i.indrelid = p_table;
+
+    SELECT coalesce(array_agg(pg_get_triggerdef(oid)), '{}') INTO v_triggers
+    FROM pg_trigger WHERE tgrelid = p_table AND NOT tgisinternal;
+
+    -- serial columns share the sequence, which would otherwise go with the old table
+    FOR r IN
+        SELECT d.objid::regclass AS seq, a.attname
+        FROM pg_depend d
+                 JOIN pg_class s ON s.oid = d.objid AND s.relkind = 'S'
+                 JOIN pg_attribute a ON a.attrelid = d.refobjid AND a.attnum = d.refobjsubid
+        WHERE d.refobjid = p_table AND d.classid = 'pg_class'::REGCLASS AND d.deptype = 'a'
+    LOOP
+        EXECUTE format('ALTER SEQUENCE %s OWNED BY %I.%I.%I', r.seq, v_schema, v_new, r.attname);
+    END LOOP;
+
+    -- the only moment reads wait, until commit
+    EXECUTE format('LOCK TABLE %s IN ACCESS EXCLUSIVE MODE', p_table);
+    EXECUTE format('DROP TABLE %s', p_table);
+    EXECUTE format('ALTER TABLE %I.%I RENAME TO %I', v_schema, v_new, v_name);
+
+    FOR r IN
+        SELECT i.indexrelid::regclass AS idx, substring(pg_get_indexdef(i.indexrelid) FROM ' USING .*$') AS def
+        FROM pg_index i WHERE i.indrelid = format('%I.%I', v_schema, v_name)::REGCLASS
+    LOOP
+        IF v_indexes ? r.def THEN
+            EXECUTE format('ALTER INDEX %s RENAME TO %I', r.idx, v_indexes ->> r.def);
+        END IF;
+    END LOOP;
+
+    FOREACH v_trigger IN ARRAY v_triggers LOOP
+        EXECUTE v_trigger;
+    END LOOP;
+
+    EXECUTE format('ANALYZE %I.%I', v_schema, v_name);
+    RETURN TRUE;
+END
+$$ LANGUAGE plpgsql;
+
+
+SELECT recluster_by_sort_key('public.buildings');
+SELECT recluster_by_sort_key('public.zonage');
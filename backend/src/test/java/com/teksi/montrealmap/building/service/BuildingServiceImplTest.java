@@ -0,0 +1,142 @@
+package com.teksi.montrealmap.building.service;
+
+import com.teksi.montrealmap.building.controller.BuildingField;
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import com.teksi.montrealmap.building.entity.Building;
+import com.teksi.montrealmap.building.repository.BuildingCentroid;
+import com.teksi.montrealmap.building.repository.BuildingProjectionRepository;
+import com.teksi.montrealmap.building.repository.BuildingRepository;
+import com.teksi.montrealmap.building.store.BuildingStore;
+import com.teksi.montrealmap.building.store.PackedBuildingSnapshot;
+import com.teksi.montrealmap.cache.RequestCoalescer;
+import com.teksi.montrealmap.cache.ResponseCache;
+import com.teksi.montrealmap.cache.ResponseCacheProperties;
+import com.teksi.montrealmap.cache.SerializedResponse;
+import com.teksi.montrealmap.load.LoadSheddingProperties;
+import com.teksi.montrealmap.progressive.ProgressiveProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The same search must give the same body whether it is served from the
+ * in-memory store, which always has every column, or from the database, which
+ * only reads the columns selected with {@code fields=}.
+ */
+class BuildingServiceImplTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+    private static final Geometry GEOM = GEOMETRY_FACTORY.toGeometry(new Envelope(-73.57, -73.56, 45.50, 45.51));
+    private static final JsonMapper JSON_MAPPER = JsonMapper.builder().build();
+
+    @Test
+    void attributeOnlyFieldsGiveTheSameBodyFromStoreAndDatabase() {
+        assertSameBodies(BuildingField.parse("id,address"));
+    }
+
+    @Test
+    void fieldsWithGeometryGiveTheSameBodyFromStoreAndDatabase() {
+        assertSameBodies(BuildingField.parse("id,address,geometry"));
+    }
+
+    private static void assertSameBodies(Set<BuildingField> fields) {
+        BuildingSearchRequest req = new BuildingSearchRequest(
+                -73.6, 45.4, -73.5, 45.6, null, null, null, null, null, null, fields);
+        BuildingServiceImpl store = storeService();
+        BuildingServiceImpl database = databaseService(fields);
+
+        List<Function<BuildingServiceImpl, SerializedResponse>> searches = List.of(
+                s -> s.search(req),
+                s -> s.searchGeoJson(req),
+                s -> s.searchGeoJsonFull(req),
+                s -> s.searchGeoJsonPolygons(req),
+                s -> s.searchGeoJsonCentroids(req));
+        for (Function<BuildingServiceImpl, SerializedResponse> search : searches) {
+            JsonNode fromStore = json(search.apply(store));
+            assertThat(json(search.apply(database))).isEqualTo(fromStore);
+            assertThat(fromStore.toString()).contains("\"address\":\"1 rue Test\"").doesNotContain("neighborhood");
+            if (!fields.contains(BuildingField.GEOMETRY)) {
+                assertThat(fromStore.toString()).doesNotContain("coordinates").doesNotContain("longitude");
+            }
+        }
+    }
+
+    private static BuildingServiceImpl storeService() {
+        PackedBuildingSnapshot snapshot = mock(PackedBuildingSnapshot.class);
+        Building full = new Building("b1", "1 rue Test", "Plateau", 1920, 3, "residential", GEOM);
+        when(snapshot.searchInBbox(any())).thenReturn(List.of(full));
+        when(snapshot.searchPolygonsInBbox(any())).thenReturn(List.of(full));
+
+        BuildingStore buildingStore = mock(BuildingStore.class);
+        when(buildingStore.current()).thenReturn(Optional.of(snapshot));
+        return service(buildingStore, mock(BuildingRepository.class), mock(BuildingProjectionRepository.class));
+    }
+
+    // as the projection and centroid queries read them: only the selected columns, all attributes
+    private static BuildingServiceImpl databaseService(Set<BuildingField> fields) {
+        Building projected = new Building();
+        projected.setId("b1");
+        projected.setAddress("1 rue Test");
+        if (fields.contains(BuildingField.GEOMETRY)) projected.setGeom(GEOM);
+        BuildingProjectionRepository projectionRepository = mock(BuildingProjectionRepository.class);
+        when(projectionRepository.searchInBbox(any(), anyBoolean())).thenReturn(List.of(projected));
+
+        Point point = GEOM.getInteriorPoint();
+        BuildingCentroid centroid = mock(BuildingCentroid.class);
+        when(centroid.getId()).thenReturn("b1");
+        when(centroid.getAddress()).thenReturn("1 rue Test");
+        when(centroid.getNeighborhood()).thenReturn("Plateau");
+        when(centroid.getYearBuilt()).thenReturn(1920);
+        when(centroid.getFloors()).thenReturn(3);
+        when(centroid.getBuildingType()).thenReturn("residential");
+        when(centroid.getLng()).thenReturn(point.getX());
+        when(centroid.getLat()).thenReturn(point.getY());
+        BuildingRepository buildingRepository = mock(BuildingRepository.class);
+        when(buildingRepository.searchCentroidsInBbox(anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                any(), any(), any(), any(), any(), any())).thenReturn(List.of(centroid));
+
+        BuildingStore buildingStore = mock(BuildingStore.class);
+        when(buildingStore.current()).thenReturn(Optional.empty());
+        return service(buildingStore, buildingRepository, projectionRepository);
+    }
+
+    private static BuildingServiceImpl service(BuildingStore buildingStore, BuildingRepository buildingRepository,
+                                               BuildingProjectionRepository projectionRepository) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new BuildingServiceImpl(
+                buildingRepository,
+                projectionRepository,
+                buildingStore,
+                new RequestCoalescer(meterRegistry),
+                new ResponseCache(new ResponseCacheProperties(false, DataSize.ofMegabytes(1), Duration.ofSeconds(1)), meterRegistry),
+                new LoadSheddingProperties(true, 20000, 150000, 20000, 64, 0.005, Duration.ofMinutes(30), 8, 32,
+                        Duration.ofMillis(100), Duration.ofSeconds(1)),
+                new ProgressiveProperties(1000, 512),
+                JSON_MAPPER);
+    }
+
+    private static JsonNode json(SerializedResponse response) {
+        return JSON_MAPPER.readTree(new String(response.json(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package com.teksi.montrealmap.building.store;
+
+import com.teksi.montrealmap.building.entity.Building;
+import com.teksi.montrealmap.tile.TileKey;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackedBuildingSnapshotTest {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void buildingAcrossATileEdgeIsInBothTiles() {
+        TileKey west = new TileKey(16, 19400, 23450);
+        TileKey east = new TileKey(16, 19401, 23450);
+        double edge = west.bounds().getMaxX();
+        double midLat = west.bounds().centre().y;
+
+        PackedBuildingSnapshot.Builder builder = new PackedBuildingSnapshot.Builder();
+        builder.add("straddling", null, null, null, null, null,
+                GEOMETRY_FACTORY.toGeometry(new Envelope(edge - 0.0001, edge + 0.0001, midLat - 0.0001, midLat + 0.0001)));
+        builder.add("west-only", null, null, null, null, null,
+                GEOMETRY_FACTORY.toGeometry(new Envelope(edge - 0.0004, edge - 0.0002, midLat - 0.0001, midLat + 0.0001)));
+        PackedBuildingSnapshot snapshot = builder.build();
+
+        assertThat(ids(snapshot.intersectingBbox(west.bounds()))).containsExactlyInAnyOrder("straddling", "west-only");
+        assertThat(ids(snapshot.intersectingBbox(east.bounds()))).containsExactly("straddling");
+    }
+
+    @Test
+    void coarseTilesCountABuildingAcrossATileEdgeOnce() {
+        TileKey west = new TileKey(16, 19400, 23450);
+        TileKey east = new TileKey(16, 19401, 23450);
+        double edge = west.bounds().getMaxX();
+        double midLat = west.bounds().centre().y;
+
+        PackedBuildingSnapshot.Builder builder = new PackedBuildingSnapshot.Builder();
+        builder.add("mostly-east", null, null, null, null, null,
+                GEOMETRY_FACTORY.toGeometry(new Envelope(edge - 0.0001, edge + 0.0003, midLat - 0.0001, midLat + 0.0001)));
+        builder.add("centered-on-edge", null, null, null, null, null,
+                GEOMETRY_FACTORY.toGeometry(new Envelope(edge - 0.0001, edge + 0.0001, midLat - 0.0001, midLat + 0.0001)));
+        PackedBuildingSnapshot snapshot = builder.build();
+
+        assertThat(snapshot.centeredInBbox(west.bounds())).isEmpty();
+        assertThat(ids(snapshot.centeredInBbox(east.bounds()))).containsExactlyInAnyOrder("mostly-east", "centered-on-edge");
+    }
+
+    @Test
+    void buildingWhoseBoundsButNotShapeReachTheTileIsLeftOut() {
+        TileKey tile = new TileKey(16, 19400, 23450);
+        Envelope b = tile.bounds();
+        double d = b.getWidth() / 10;
+
+        // an L whose bbox covers the tile corner, while the L itself stays outside
+        PackedBuildingSnapshot.Builder builder = new PackedBuildingSnapshot.Builder();
+        builder.add("l-shape", null, null, null, null, null, GEOMETRY_FACTORY.createPolygon(new Coordinate[]{
+                new Coordinate(b.getMaxX() + d, b.getMaxY() - d),
+                new Coordinate(b.getMaxX() + 2 * d, b.getMaxY() - d),
+                new Coordinate(b.getMaxX() + 2 * d, b.getMaxY() + 2 * d),
+                new Coordinate(b.getMaxX() - d, b.getMaxY() + 2 * d),
+                new Coordinate(b.getMaxX() - d, b.getMaxY() + d),
+                new Coordinate(b.getMaxX() + d, b.getMaxY() + d),
+                new Coordinate(b.getMaxX() + d, b.getMaxY() - d)
+        }));
+        PackedBuildingSnapshot snapshot = builder.build();
+
+        assertThat(snapshot.intersectingBbox(b)).isEmpty();
+    }
+
+    private static List<String> ids(List<Building> buildings) {
+        return buildings.stream().map(Building::getId).toList();
+    }
+}
@@ -0,0 +1,211 @@
+package com.teksi.montrealmap.cache;
+
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.CancelledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class RequestCoalescerTest {
+
+    private static final String OPERATION = "test.search";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(meterRegistry);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void identicalCallsInFlightShareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Supplier<String> computation = () -> {
+            runs.incrementAndGet();
+            waitFor(release);
+            return "result";
+        };
+
+        Future<String> leader = call("key", Cancellation.withoutDeadline(), computation);
+        awaitCount("executed", 1);
+        Future<String> joiner = call("key", Cancellation.withoutDeadline(), computation);
+        awaitCount("coalesced", 1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(joiner.get(5, TimeUnit.SECONDS)).isSameAs(leader.get());
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void callsForDifferentKeysOrAfterTheFlightRunSeparately() throws Exception {
+        assertThat(call("a", Cancellation.withoutDeadline(), () -> "a").get(5, TimeUnit.SECONDS)).isEqualTo("a");
+        assertThat(call("b", Cancellation.withoutDeadline(), () -> "b").get(5, TimeUnit.SECONDS)).isEqualTo("b");
+        assertThat(call("a", Cancellation.withoutDeadline(), () -> "again").get(5, TimeUnit.SECONDS)).isEqualTo("again");
+
+        assertThat(count("executed")).isEqualTo(3);
+        assertThat(count("coalesced")).isZero();
+    }
+
+    @Test
+    void failureReachesEveryCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("query failed");
+        Supplier<String> computation = () -> {
+            waitFor(release);
+            throw failure;
+        };
+
+        Future<String> leader = call("key", Cancellation.withoutDeadline(), computation);
+        awaitCount("executed", 1);
+        Future<String> joiner = call("key", Cancellation.withoutDeadline(), computation);
+        awaitCount("coalesced", 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThatThrownBy(() -> joiner.get(5, TimeUnit.SECONDS)).hasCause(failure);
+    }
+
+    @Test
+    void cancelledJoinerStopsWaitingWhileTheFlightGoesOn() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Cancellation> flight = new CompletableFuture<>();
+        Supplier<String> computation = () -> {
+            flight.complete(Cancellation.current());
+            waitFor(release);
+            return "result";
+        };
+
+        Future<String> leader = call("key", Cancellation.withoutDeadline(), computation);
+        awaitCount("executed", 1);
+        Cancellation joinerRequest = Cancellation.withoutDeadline();
+        Future<String> joiner = call("key", joinerRequest, computation);
+        awaitCount("coalesced", 1);
+
+        joinerRequest.cancel(Cancellation.Reason.CLIENT_GONE);
+        assertThatThrownBy(() -> joiner.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CancelledException.class);
+        assertThat(flight.get(5, TimeUnit.SECONDS).isCancelled()).isFalse();
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    @Test
+    void flightIsAbandonedOnceEveryCallerIsCancelled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Cancellation> flight = new CompletableFuture<>();
+        Supplier<String> computation = () -> {
+            flight.complete(Cancellation.current());
+            waitFor(release);
+            Cancellation.current().throwIfCancelled("query");
+            return "result";
+        };
+
+        Cancellation leaderRequest = Cancellation.withoutDeadline();
+        Cancellation joinerRequest = Cancellation.withoutDeadline();
+        Future<String> leader = call("key", leaderRequest, computation);
+        awaitCount("executed", 1);
+        Future<String> joiner = call("key", joinerRequest, computation);
+        awaitCount("coalesced", 1);
+
+        leaderRequest.cancel(Cancellation.Reason.DEADLINE);
+        assertThat(flight.get(5, TimeUnit.SECONDS).isCancelled()).isFalse();
+        joinerRequest.cancel(Cancellation.Reason.CLIENT_GONE);
+        assertThat(flight.get().reason()).isEqualTo(Cancellation.Reason.ABANDONED);
+
+        release.countDown();
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CancelledException.class);
+        assertThatThrownBy(() -> joiner.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CancelledException.class);
+    }
+
+    @Test
+    void abandonedFlightStillRunningIsReplacedInsteadOfJoined() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Cancellation firstRequest = Cancellation.withoutDeadline();
+        Future<String> first = call("key", firstRequest, () -> {
+            waitFor(release);
+            return "stale";
+        });
+        awaitCount("executed", 1);
+        // abandoned, while the computation has not noticed it yet
+        firstRequest.cancel(Cancellation.Reason.CLIENT_GONE);
+
+        Future<String> second = call("key", Cancellation.withoutDeadline(), () -> "fresh");
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("fresh");
+        assertThat(count("executed")).isEqualTo(2);
+        assertThat(count("coalesced")).isZero();
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("stale");
+    }
+
+    @Test
+    void flightRunsUntilTheLatestDeadlineOfItsRequests() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Cancellation> flight = new CompletableFuture<>();
+        Supplier<String> computation = () -> {
+            flight.complete(Cancellation.current());
+            waitFor(release);
+            return "result";
+        };
+
+        Future<String> leader = call("key", Cancellation.withDeadline(Duration.ofSeconds(5)), computation);
+        awaitCount("executed", 1);
+        assertThat(flight.get(5, TimeUnit.SECONDS).remaining()).isNotNull().isLessThanOrEqualTo(Duration.ofSeconds(5));
+
+        Future<String> joiner = call("key", Cancellation.withDeadline(Duration.ofSeconds(30)), computation);
+        awaitCount("coalesced", 1);
+        assertThat(flight.get().remaining()).isGreaterThan(Duration.ofSeconds(25));
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(joiner.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    }
+
+    private <T> Future<T> call(String key, Cancellation request, Supplier<T> computation) {
+        return executor.submit(() -> {
+            try (Cancellation.Registration ignored = request.bind()) {
+                return coalescer.execute(OPERATION, key, computation);
+            }
+        });
+    }
+
+    private void awaitCount(String outcome, double expected) {
+        await().atMost(5, TimeUnit.SECONDS).until(() -> count(outcome) == expected);
+    }
+
+    private double count(String outcome) {
+        Counter counter = meterRegistry.find("montreal.coalescing.requests")
+                .tag("operation", OPERATION)
+                .tag("outcome", outcome)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static void waitFor(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("not released");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.teksi.montrealmap.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void admitsAResponseTheSecondTimeItIsRequested() {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+
+        cache.get("buildings.search", "key", loader(100));
+        cache.get("buildings.search", "key", loader(100));
+        cache.get("buildings.search", "key", loader(100));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void expiredResponseIsLoadedAgain() throws InterruptedException {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMillis(20));
+        cache.get("buildings.search", "key", loader(100));
+        cache.get("buildings.search", "key", loader(100));
+
+        Thread.sleep(50);
+        cache.get("buildings.search", "key", loader(100));
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void responseLoadedWhileAnInvalidationRanIsNotAdmitted() {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        cache.get("buildings.search", "key", loader(100));
+        cache.get("buildings.search", "key", () -> {
+            cache.invalidate("buildings.");
+            return loader(100).get();
+        });
+
+        cache.get("buildings.search", "key", loader(100));
+
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void invalidationDropsOnlyTheMatchingOperations() {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        for (String operation : new String[]{"buildings.search", "zonage.searchGeoJson"}) {
+            cache.get(operation, "key", loader(100));
+            cache.get(operation, "key", loader(100));
+        }
+
+        cache.invalidate("buildings.");
+        cache.get("buildings.search", "key", loader(100));
+        cache.get("zonage.searchGeoJson", "key", loader(100));
+
+        assertThat(loads).hasValue(5);
+    }
+
+    @Test
+    void compressedVariantsCountTowardTheSize() {
+        ResponseCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        cache.get("buildings.search", "key", loader(1000));
+        SerializedResponse cached = cache.get("buildings.search", "key", loader(1000));
+        assertThat(size()).isEqualTo(1000);
+
+        cached.encoded(ContentEncoding.GZIP, (encoding, json) -> new byte[300]);
+        cached.encoded(ContentEncoding.GZIP, (encoding, json) -> new byte[300]);
+        cached.encoded(ContentEncoding.DEFLATE, (encoding, json) -> new byte[200]);
+        assertThat(size()).isEqualTo(1500);
+
+        cache.invalidateAll();
+        assertThat(size()).isZero();
+    }
+
+    @Test
+    void compressedVariantsCanEvictOlderEntries() {
+        ResponseCache cache = cache(DataSize.ofKilobytes(8), Duration.ofMinutes(1));
+        for (String key : new String[]{"old", "new"}) {
+            cache.get("buildings.search", key, loader(1000));
+            cache.get("buildings.search", key, loader(1000));
+        }
+
+        cache.get("buildings.search", "new", loader(1000))
+                .encoded(ContentEncoding.GZIP, (encoding, json) -> new byte[7000]);
+
+        assertThat(size()).isEqualTo(8000);
+        cache.get("buildings.search", "old", loader(1000));
+        assertThat(loads).hasValue(5);
+    }
+
+    private ResponseCache cache(DataSize maxSize, Duration ttl) {
+        return new ResponseCache(new ResponseCacheProperties(true, maxSize, ttl), meterRegistry);
+    }
+
+    private Supplier<SerializedResponse> loader(int size) {
+        return () -> {
+            loads.incrementAndGet();
+            return SerializedResponse.of(new byte[size]);
+        };
+    }
+
+    private double size() {
+        return meterRegistry.get("montreal.response.cache.size").gauge().value();
+    }
+}
@@ -0,0 +1,33 @@
+package com.teksi.montrealmap.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCompressorTest {
+
+    @Test
+    void picksTheAcceptedEncodingWithTheHighestQuality() {
+        assertThat(ResponseCompressor.negotiate("gzip, deflate")).hasValue(ContentEncoding.GZIP);
+        assertThat(ResponseCompressor.negotiate("gzip;q=0.5, deflate")).hasValue(ContentEncoding.DEFLATE);
+        assertThat(ResponseCompressor.negotiate("deflate;q=0.9, GZIP;q=0.8, br")).hasValue(ContentEncoding.DEFLATE);
+        assertThat(ResponseCompressor.negotiate("br, deflate ; q=0.1")).hasValue(ContentEncoding.DEFLATE);
+    }
+
+    @Test
+    void wildcardCoversTheEncodingsNotListed() {
+        assertThat(ResponseCompressor.negotiate("*")).hasValue(ContentEncoding.GZIP);
+        assertThat(ResponseCompressor.negotiate("gzip;q=0, *")).hasValue(ContentEncoding.DEFLATE);
+        assertThat(ResponseCompressor.negotiate("deflate, *;q=0")).hasValue(ContentEncoding.DEFLATE);
+    }
+
+    @Test
+    void sendsTheBodyAsIsWhenNothingSupportedIsAcceptable() {
+        assertThat(ResponseCompressor.negotiate(null)).isEmpty();
+        assertThat(ResponseCompressor.negotiate(" ")).isEmpty();
+        assertThat(ResponseCompressor.negotiate("identity, br")).isEmpty();
+        assertThat(ResponseCompressor.negotiate("gzip;q=0, deflate;q=0")).isEmpty();
+        assertThat(ResponseCompressor.negotiate("*;q=0")).isEmpty();
+        assertThat(ResponseCompressor.negotiate("gzip;q=abc")).isEmpty();
+    }
+}
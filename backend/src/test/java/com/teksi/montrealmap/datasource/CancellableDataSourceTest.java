@@ -0,0 +1,101 @@
+package com.teksi.montrealmap.datasource;
+
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.CancelledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CancellableDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private CancellableDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(connection);
+        dataSource = new CancellableDataSource(target, meterRegistry);
+    }
+
+    @Test
+    void statementGetsTheTimeLeftAsItsQueryTimeout() throws SQLException {
+        try (Cancellation.Registration ignored = Cancellation.withDeadline(Duration.ofMillis(2500)).bind()) {
+            prepare().executeQuery();
+        }
+
+        verify(statement).setQueryTimeout(3);
+        verify(statement).executeQuery();
+    }
+
+    @Test
+    void statementOutsideARequestHasNoTimeout() throws SQLException {
+        prepare().executeQuery();
+
+        verify(statement, never()).setQueryTimeout(anyInt());
+    }
+
+    @Test
+    void statementIsNotStartedForACancelledRequest() throws SQLException {
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        cancellation.cancel(Cancellation.Reason.CLIENT_GONE);
+
+        try (Cancellation.Registration ignored = cancellation.bind()) {
+            PreparedStatement prepared = prepare();
+            assertThatThrownBy(prepared::executeQuery).isInstanceOf(CancelledException.class);
+        }
+        verify(statement, never()).executeQuery();
+    }
+
+    @Test
+    void runningStatementIsCancelledWithItsRequest() throws SQLException {
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        when(statement.executeQuery()).then(invocation -> {
+            // as the watchdog would, while the statement runs
+            cancellation.cancel(Cancellation.Reason.CLIENT_GONE);
+            throw new SQLException("canceling statement due to user request", "57014");
+        });
+
+        try (Cancellation.Registration ignored = cancellation.bind()) {
+            PreparedStatement prepared = prepare();
+            assertThatThrownBy(prepared::executeQuery)
+                    .isInstanceOf(CancelledException.class)
+                    .hasCauseInstanceOf(SQLException.class);
+        }
+        verify(statement).cancel();
+        assertThat(meterRegistry.get("montreal.cancellation.statements").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failureOfAStatementStillWantedIsRethrown() throws SQLException {
+        SQLException failure = new SQLException("relation does not exist", "42P01");
+        when(statement.executeQuery()).thenThrow(failure);
+
+        try (Cancellation.Registration ignored = Cancellation.withoutDeadline().bind()) {
+            PreparedStatement prepared = prepare();
+            assertThatThrownBy(prepared::executeQuery).isSameAs(failure);
+        }
+    }
+
+    private PreparedStatement prepare() throws SQLException {
+        return dataSource.getConnection().prepareStatement("select 1");
+    }
+}
@@ -0,0 +1,95 @@
+package com.teksi.montrealmap.load;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BulkheadInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void requestBeyondTheLimitIsRejected() throws Exception {
+        BulkheadInterceptor interceptor = new BulkheadInterceptor(properties(true), meterRegistry);
+        HandlerMethod handler = handler("search");
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler)).isTrue();
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), response, handler))
+                .isInstanceOfSatisfying(BulkheadFullException.class,
+                        e -> assertThat(e.endpointClass()).isEqualTo(EndpointClass.GEOMETRY));
+
+        assertThat(rejected("geometry")).isEqualTo(1);
+        assertThat(rejected("lookup")).isZero();
+        assertThat(meterRegistry.get("montreal.bulkhead.active").tag("class", "geometry").gauge().value())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void completedRequestReleasesItsPermit() throws Exception {
+        BulkheadInterceptor interceptor = new BulkheadInterceptor(properties(true), meterRegistry);
+        HandlerMethod handler = handler("search");
+        MockHttpServletRequest first = new MockHttpServletRequest();
+
+        interceptor.preHandle(first, response, handler);
+        interceptor.afterCompletion(first, response, handler, null);
+        // a second completion must not hand out an extra permit
+        interceptor.afterCompletion(first, response, handler, null);
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler)).isTrue();
+        assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), response, handler))
+                .isInstanceOf(BulkheadFullException.class);
+    }
+
+    @Test
+    void classesHaveSeparateLimits() throws Exception {
+        BulkheadInterceptor interceptor = new BulkheadInterceptor(properties(true), meterRegistry);
+
+        interceptor.preHandle(new MockHttpServletRequest(), response, handler("search"));
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler("lookup"))).isTrue();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response,
+                new HandlerMethod(new Object(), Object.class.getMethod("toString")))).isTrue();
+    }
+
+    @Test
+    void nothingIsLimitedWhenDisabled() throws Exception {
+        BulkheadInterceptor interceptor = new BulkheadInterceptor(properties(false), meterRegistry);
+        HandlerMethod handler = handler("search");
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler)).isTrue();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, handler)).isTrue();
+        assertThat(rejected("geometry")).isZero();
+    }
+
+    private static HandlerMethod handler(String method) throws NoSuchMethodException {
+        return new HandlerMethod(new TestController(), TestController.class.getMethod(method));
+    }
+
+    private double rejected(String endpointClass) {
+        return meterRegistry.get("montreal.bulkhead.rejected").tag("class", endpointClass).counter().count();
+    }
+
+    private static LoadSheddingProperties properties(boolean enabled) {
+        return new LoadSheddingProperties(enabled, 20000, 150000, 20000, 64, 0.005, Duration.ofMinutes(30),
+                1, 1, Duration.ofMillis(10), Duration.ofSeconds(1));
+    }
+
+    @Bulkhead(EndpointClass.LOOKUP)
+    static class TestController {
+
+        @Bulkhead(EndpointClass.GEOMETRY)
+        public void search() {
+        }
+
+        public void lookup() {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.teksi.montrealmap.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CancellationTest {
+
+    @Test
+    void passedDeadlineCancels() throws InterruptedException {
+        Cancellation cancellation = Cancellation.withDeadline(Duration.ofMillis(10));
+        assertThat(cancellation.isCancelled()).isFalse();
+
+        Thread.sleep(30);
+
+        assertThat(cancellation.isCancelled()).isTrue();
+        assertThat(cancellation.reason()).isEqualTo(Cancellation.Reason.DEADLINE);
+        assertThat(cancellation.remaining()).isZero();
+        assertThatThrownBy(() -> cancellation.throwIfCancelled("query"))
+                .isInstanceOf(CancelledException.class)
+                .hasMessageContaining("DEADLINE")
+                .hasMessageContaining("query");
+    }
+
+    @Test
+    void firstReasonWinsAndListenersRunOnce() {
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        AtomicInteger runs = new AtomicInteger();
+        cancellation.onCancel(runs::incrementAndGet);
+
+        cancellation.cancel(Cancellation.Reason.CLIENT_GONE);
+        cancellation.cancel(Cancellation.Reason.DEADLINE);
+
+        assertThat(cancellation.reason()).isEqualTo(Cancellation.Reason.CLIENT_GONE);
+        assertThat(runs).hasValue(1);
+        // registered after the fact, it runs right away
+        cancellation.onCancel(runs::incrementAndGet);
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void closedRegistrationDoesNotRun() {
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        AtomicInteger runs = new AtomicInteger();
+        cancellation.onCancel(runs::incrementAndGet).close();
+
+        cancellation.cancel(Cancellation.Reason.CLIENT_GONE);
+
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void bindMakesTheTokenCurrentUntilClosed() {
+        Cancellation outer = Cancellation.withoutDeadline();
+        Cancellation inner = Cancellation.withoutDeadline();
+        assertThat(Cancellation.current().remaining()).isNull();
+
+        try (Cancellation.Registration ignored = outer.bind()) {
+            try (Cancellation.Registration alsoIgnored = inner.bind()) {
+                assertThat(Cancellation.current()).isSameAs(inner);
+            }
+            assertThat(Cancellation.current()).isSameAs(outer);
+        }
+        assertThat(Cancellation.current()).isNotSameAs(outer);
+    }
+
+    @Test
+    void tokenOutsideARequestIsNeverCancelled() {
+        Cancellation none = Cancellation.current();
+        none.cancel(Cancellation.Reason.CLIENT_GONE);
+
+        assertThat(none.isCancelled()).isFalse();
+    }
+
+    @Test
+    void sharedDeadlineIsTheLatestOfItsRequests() {
+        Cancellation shared = Cancellation.withDeadlineOf(Cancellation.withDeadline(Duration.ofSeconds(2)));
+
+        shared.extendDeadline(Cancellation.withDeadline(Duration.ofSeconds(1)));
+        assertThat(shared.remaining()).isGreaterThan(Duration.ofMillis(1500));
+
+        shared.extendDeadline(Cancellation.withDeadline(Duration.ofSeconds(10)));
+        assertThat(shared.remaining()).isGreaterThan(Duration.ofSeconds(9));
+
+        shared.extendDeadline(Cancellation.withoutDeadline());
+        assertThat(shared.remaining()).isNull();
+
+        shared.extendDeadline(Cancellation.withDeadline(Duration.ofSeconds(1)));
+        assertThat(shared.remaining()).isNull();
+    }
+}
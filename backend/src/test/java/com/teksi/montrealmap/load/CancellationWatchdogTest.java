@@ -0,0 +1,75 @@
+package com.teksi.montrealmap.load;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class CancellationWatchdogTest {
+
+    private final CancellationWatchdog watchdog = new CancellationWatchdog(
+            new CancellationProperties(true, true, Duration.ofSeconds(15), Duration.ofSeconds(3), Duration.ofMillis(10)));
+
+    @AfterEach
+    void shutdown() {
+        watchdog.shutdown();
+    }
+
+    @Test
+    void cancelsOnceTheClientHasGone() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        try (CancellationWatchdog.Watch ignored = watchdog.watch(cancellation, closed::get)) {
+            watchdog.check();
+            assertThat(cancellation.isCancelled()).isFalse();
+
+            closed.set(true);
+            await().atMost(5, TimeUnit.SECONDS).until(cancellation::isCancelled);
+            assertThat(cancellation.reason()).isEqualTo(Cancellation.Reason.CLIENT_GONE);
+        }
+    }
+
+    @Test
+    void cancelsOnceTheDeadlinePasses() {
+        Cancellation cancellation = Cancellation.withDeadline(Duration.ofMillis(20));
+        CancellationWatchdog.Watch watch = watchdog.watch(cancellation, null);
+        // nothing else checks the token here
+        AtomicBoolean cancelled = new AtomicBoolean();
+        cancellation.onCancel(() -> cancelled.set(true));
+
+        await().atMost(5, TimeUnit.SECONDS).untilTrue(cancelled);
+        assertThat(cancellation.reason()).isEqualTo(Cancellation.Reason.DEADLINE);
+        watch.close();
+    }
+
+    @Test
+    void closedWatchIsNoLongerProbed() {
+        Cancellation cancellation = Cancellation.withoutDeadline();
+        CancellationWatchdog.Watch watch = watchdog.watch(cancellation, () -> true);
+        watch.close();
+
+        watchdog.check();
+
+        assertThat(cancellation.isCancelled()).isFalse();
+    }
+
+    @Test
+    void failingProbeDoesNotStopTheOtherChecks() {
+        Cancellation failing = Cancellation.withoutDeadline();
+        Cancellation gone = Cancellation.withoutDeadline();
+        try (CancellationWatchdog.Watch first = watchdog.watch(failing, () -> {
+                 throw new IllegalStateException("request recycled");
+             });
+             CancellationWatchdog.Watch second = watchdog.watch(gone, () -> true)) {
+            watchdog.check();
+
+            assertThat(gone.reason()).isEqualTo(Cancellation.Reason.CLIENT_GONE);
+            assertThat(failing.isCancelled()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.teksi.montrealmap.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DensityGridTest {
+
+    // cells of one degree, so that bbox fractions stay exact
+    private final DensityGrid grid = new DensityGrid.Builder(1.0)
+            .add(0, 0, 100)
+            .add(1, 0, 40)
+            .build();
+
+    @Test
+    void wholeCellCountsEveryFeatureInIt() {
+        assertThat(grid.estimate(0, 0, 1, 1)).isEqualTo(100);
+        assertThat(grid.estimate(1, 0, 2, 1)).isEqualTo(40);
+    }
+
+    @Test
+    void partialOverlapCountsItsShareOfEachCell() {
+        assertThat(grid.estimate(0, 0, 0.5, 1)).isEqualTo(50);
+        assertThat(grid.estimate(0, 0, 0.5, 0.5)).isEqualTo(25);
+        assertThat(grid.estimate(0.5, 0, 1.5, 1)).isEqualTo(70);
+    }
+
+    @Test
+    void bboxIsClippedToThePopulatedExtent() {
+        assertThat(grid.estimate(-180, -90, 180, 90)).isEqualTo(140);
+        assertThat(grid.estimate(5, 0, 6, 1)).isZero();
+        assertThat(grid.estimate(-6, -6, -5, -5)).isZero();
+    }
+
+    @Test
+    void emptyBboxOrGridEstimatesNothing() {
+        assertThat(grid.estimate(1, 1, 0, 0)).isZero();
+        assertThat(grid.estimate(0, 0, 0, 1)).isZero();
+        assertThat(new DensityGrid.Builder(1.0).build().estimate(-180, -90, 180, 90)).isZero();
+    }
+
+    @Test
+    void countsOfTheSameCellAddUp() {
+        DensityGrid merged = new DensityGrid.Builder(1.0).add(3, 4, 10).add(3, 4, 5).build();
+
+        assertThat(merged.total()).isEqualTo(15);
+        assertThat(merged.estimate(3, 4, 4, 5)).isEqualTo(15);
+    }
+}
@@ -0,0 +1,58 @@
+package com.teksi.montrealmap.load;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoadSheddingExceptionHandlerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoadSheddingExceptionHandler handler = new LoadSheddingExceptionHandler(
+            new LoadSheddingProperties(true, 20000, 150000, 20000, 64, 0.005, Duration.ofMinutes(30),
+                    8, 32, Duration.ofMillis(100), Duration.ofSeconds(2)),
+            meterRegistry);
+
+    @Test
+    void cancellationBeforeTheResponseStartsIsRetryable() {
+        ResponseEntity<Map<String, String>> entity = handler.cancelled(
+                new CancelledException(Cancellation.Reason.DEADLINE, "query", null), new MockHttpServletResponse());
+
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(entity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(cancelled("deadline", "query")).isEqualTo(1);
+    }
+
+    @Test
+    void cancellationOfAStartedResponseIsRethrown() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCommitted(true);
+        CancelledException e = new CancelledException(Cancellation.Reason.CLIENT_GONE, "serialization", null);
+
+        assertThatThrownBy(() -> handler.cancelled(e, response)).isSameAs(e);
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isNull();
+        assertThat(cancelled("client_gone", "serialization")).isEqualTo(1);
+    }
+
+    @Test
+    void fullBulkheadIsTooManyRequests() {
+        ResponseEntity<Map<String, String>> entity = handler.bulkheadFull(new BulkheadFullException(EndpointClass.GEOMETRY));
+
+        assertThat(entity.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(entity.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+    }
+
+    private double cancelled(String reason, String stage) {
+        return meterRegistry.get("montreal.cancellation.requests").tag("reason", reason).tag("stage", stage)
+                .counter().count();
+    }
+}
@@ -0,0 +1,127 @@
+package com.teksi.montrealmap.load;
+
+import com.teksi.montrealmap.building.controller.BuildingSearchRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestCostEstimatorTest {
+
+    // wider than the single populated cell, so the estimate is the whole count
+    private static final BuildingSearchRequest REQUEST =
+            new BuildingSearchRequest(-73.7, 45.4, -73.5, 45.6, null, null, null, null, null, null);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void smallResultKeepsTheRequestedLevel() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 100);
+
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.POLYGONS)).isEqualTo(LevelOfDetail.POLYGONS);
+        assertThat(levelCount("polygons", false)).isEqualTo(1);
+    }
+
+    @Test
+    void tooManyPolygonsDegradesToCentroids() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 500);
+
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.POLYGONS)).isEqualTo(LevelOfDetail.CENTROIDS);
+        assertThat(levelCount("centroids", true)).isEqualTo(1);
+    }
+
+    @Test
+    void tooManyCentroidsDegradesToAggregates() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 5000);
+
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.POLYGONS)).isEqualTo(LevelOfDetail.AGGREGATES);
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.CENTROIDS)).isEqualTo(LevelOfDetail.AGGREGATES);
+    }
+
+    @Test
+    void coarserRequestedLevelIsNeverRefined() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 500);
+
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.CENTROIDS)).isEqualTo(LevelOfDetail.CENTROIDS);
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.AGGREGATES)).isEqualTo(LevelOfDetail.AGGREGATES);
+    }
+
+    @Test
+    void nothingIsDegradedOrRefusedBeforeTheStatisticsLoad() {
+        RequestCostEstimator estimator = new RequestCostEstimator(jdbcTemplate, properties(true), meterRegistry);
+
+        assertThat(estimator.estimateBuildings(REQUEST)).isEmpty();
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.POLYGONS)).isEqualTo(LevelOfDetail.POLYGONS);
+        assertThat(estimator.exceeds(REQUEST, 0)).isFalse();
+    }
+
+    @Test
+    void nothingIsDegradedOrRefusedWhenDisabled() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(false), 5000);
+
+        assertThat(estimator.buildingLevelOfDetail(REQUEST, LevelOfDetail.POLYGONS)).isEqualTo(LevelOfDetail.POLYGONS);
+        assertThat(estimator.exceeds(REQUEST, 500)).isFalse();
+    }
+
+    @Test
+    void searchAboveTheLimitIsRefused() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 600);
+
+        assertThat(estimator.exceeds(REQUEST, 600)).isFalse();
+        assertThat(estimator.exceeds(REQUEST, 500)).isTrue();
+        assertThat(meterRegistry.get("montreal.load-shedding.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRefreshKeepsThePreviousStatistics() throws Exception {
+        RequestCostEstimator estimator = loaded(properties(true), 500);
+        doThrow(new IllegalStateException("database down"))
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        estimator.refresh();
+
+        assertThat(estimator.estimateBuildings(REQUEST)).hasValue(500);
+    }
+
+    private RequestCostEstimator loaded(LoadSheddingProperties properties, long buildings) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("cell_x")).thenReturn(-7360L);
+        when(row.getLong("cell_y")).thenReturn(4550L);
+        when(row.getLong("n")).thenReturn(buildings);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        RequestCostEstimator estimator = new RequestCostEstimator(jdbcTemplate, properties, meterRegistry);
+        estimator.refresh();
+        assertThat(estimator.estimateBuildings(REQUEST)).hasValue(buildings);
+        return estimator;
+    }
+
+    private double levelCount(String level, boolean degraded) {
+        Counter counter = meterRegistry.find("montreal.load-shedding.level-of-detail")
+                .tag("level", level)
+                .tag("degraded", String.valueOf(degraded))
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static LoadSheddingProperties properties(boolean enabled) {
+        return new LoadSheddingProperties(enabled, 100, 1000, 500, 64, 0.01, Duration.ofMinutes(30),
+                8, 32, Duration.ofMillis(100), Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,44 @@
+package com.teksi.montrealmap.loadtest;
+
+enum Endpoint {
+    BUILDING_POLYGONS("building-polygons", "/api/buildings/search/geojsonsearch-polygons", 150, 600),
+    ZONAGE_GEOJSON("zonage-geojson", "/api/zonage/search/geojson", 150, 600),
+    ZONAGE_AT_POINT("zonage-at-point", "/api/zonage/at-point", 30, 150),
+    ZONAGE_TAB_AT_POINT("zonage-tab-at-point", "/api/zonage-tab/at-point", 30, 150);
+
+    private final String key;
+    private final String path;
+    private final double defaultP50Millis;
+    private final double defaultP99Millis;
+
+    Endpoint(String key, String path, double defaultP50Millis, double defaultP99Millis) {
+        this.key = key;
+        this.path = path;
+        this.defaultP50Millis = defaultP50Millis;
+        this.defaultP99Millis = defaultP99Millis;
+    }
+
+    String key() {
+        return key;
+    }
+
+    String path() {
+        return path;
+    }
+
+    double p50SloMillis() {
+        return LoadTestSettings.sloMillis(this, "p50", defaultP50Millis);
+    }
+
+    double p99SloMillis() {
+        return LoadTestSettings.sloMillis(this, "p99", defaultP99Millis);
+    }
+
+    /**
+     * Point lookups legitimately answer 404 when the click misses every zone.
+     */
+    boolean isSuccess(int status) {
+        if (status >= 200 && status < 300) return true;
+        return status == 404 && (this == ZONAGE_AT_POINT || this == ZONAGE_TAB_AT_POINT);
+    }
+}
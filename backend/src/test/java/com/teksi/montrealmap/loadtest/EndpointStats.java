@@ -0,0 +1,102 @@
+package com.teksi.montrealmap.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram (microseconds) and counters for one endpoint.
+ */
+final class EndpointStats {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final Endpoint endpoint;
+    private final Histogram latencyMicros = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long latencyNanos, boolean success) {
+        requests.increment();
+        if (!success) errors.increment();
+        long micros = Math.min(MAX_TRACKABLE_MICROS, Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        latencyMicros.recordValue(micros);
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    double errorRate() {
+        long total = requests.sum();
+        return total == 0 ? 0 : (double) errors.sum() / total;
+    }
+
+    double percentileMillis(double percentile) {
+        return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    String summaryLine(double elapsedSeconds) {
+        return String.format(Locale.ROOT,
+                "%-20s %8d %9.1f %7.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f",
+                endpoint.key(),
+                requests(),
+                requests() / elapsedSeconds,
+                errorRate() * 100,
+                percentileMillis(50),
+                percentileMillis(90),
+                percentileMillis(99),
+                percentileMillis(99.9),
+                latencyMicros.getMaxValue() / 1000.0);
+    }
+
+    static String summaryHeader() {
+        return String.format(Locale.ROOT,
+                "%-20s %8s %9s %8s %9s %9s %9s %9s %9s",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    List<String> sloViolations(double maxErrorRate) {
+        List<String> violations = new ArrayList<>();
+        // an endpoint the sessions never reached was not measured, which must not pass as meeting its SLO
+        if (requests() == 0) {
+            violations.add(endpoint.key() + " received no requests");
+            return violations;
+        }
+        checkPercentile(violations, "p50", 50, endpoint.p50SloMillis());
+        checkPercentile(violations, "p99", 99, endpoint.p99SloMillis());
+        if (errorRate() > maxErrorRate) {
+            violations.add(String.format(Locale.ROOT, "%s error rate %.2f%% > %.2f%%",
+                    endpoint.key(), errorRate() * 100, maxErrorRate * 100));
+        }
+        return violations;
+    }
+
+    private void checkPercentile(List<String> violations, String name, double percentile, double sloMillis) {
+        double actual = percentileMillis(percentile);
+        if (actual > sloMillis) {
+            violations.add(String.format(Locale.ROOT, "%s %s %.1f ms > SLO %.1f ms",
+                    endpoint.key(), name, actual, sloMillis));
+        }
+    }
+
+    void writeHistogram(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(endpoint.key() + ".hgrm")))) {
+            latencyMicros.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
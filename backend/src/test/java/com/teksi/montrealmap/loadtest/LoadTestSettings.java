@@ -0,0 +1,37 @@
+package com.teksi.montrealmap.loadtest;
+
+import java.time.Duration;
+
+/**
+ * Load test knobs, read from system properties so they can be passed on the
+ * Maven command line, e.g. {@code ./mvnw -Ploadtest verify -Dloadtest.rps=200}.
+ */
+record LoadTestSettings(
+        int rps,
+        Duration warmup,
+        Duration duration,
+        int sessions,
+        long seed,
+        double maxErrorRate
+) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.rps", 50),
+                Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 10L)),
+                Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60L)),
+                Integer.getInteger("loadtest.sessions", 20),
+                Long.getLong("loadtest.seed", 42L),
+                Double.parseDouble(System.getProperty("loadtest.slo.max-error-rate", "0.01"))
+        );
+    }
+
+    /**
+     * SLO for one endpoint percentile in milliseconds, e.g.
+     * {@code -Dloadtest.slo.building-polygons.p99-ms=400}.
+     */
+    static double sloMillis(Endpoint endpoint, String percentile, double defaultMillis) {
+        String key = "loadtest.slo." + endpoint.key() + "." + percentile + "-ms";
+        return Double.parseDouble(System.getProperty(key, String.valueOf(defaultMillis)));
+    }
+}
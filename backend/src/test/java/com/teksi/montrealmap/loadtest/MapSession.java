@@ -0,0 +1,102 @@
+package com.teksi.montrealmap.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * One simulated map user. Each step is what the frontend does after a
+ * {@code moveend} (pan or zoom: buildings + zonage for the new viewport) or a
+ * click (zonage at the clicked point).
+ */
+final class MapSession {
+
+    record PlannedRequest(Endpoint endpoint, String pathAndQuery) {}
+
+    // Montreal island extent, WGS84
+    private static final double MIN_LNG = -73.98;
+    private static final double MIN_LAT = 45.40;
+    private static final double MAX_LNG = -73.47;
+    private static final double MAX_LAT = 45.71;
+
+    private static final int MIN_ZOOM = 12;
+    private static final int MAX_ZOOM = 18;
+    private static final int VIEWPORT_WIDTH_PX = 1280;
+    private static final int VIEWPORT_HEIGHT_PX = 800;
+
+    private final Random random;
+    private double centerLng;
+    private double centerLat;
+    private int zoom;
+
+    MapSession(Random random) {
+        this.random = random;
+        this.centerLng = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+        this.centerLat = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+        this.zoom = 14 + random.nextInt(3);
+    }
+
+    List<PlannedRequest> nextStep() {
+        double roll = random.nextDouble();
+
+        if (roll < 0.15) {
+            return click();
+        }
+
+        if (roll < 0.30) {
+            zoom = Math.min(MAX_ZOOM, zoom + 1);
+        } else if (roll < 0.40) {
+            zoom = Math.max(MIN_ZOOM, zoom - 1);
+        } else {
+            pan();
+        }
+        return viewportRequests();
+    }
+
+    private void pan() {
+        double[] bbox = viewport();
+        double width = bbox[2] - bbox[0];
+        double height = bbox[3] - bbox[1];
+        centerLng = clamp(centerLng + (random.nextDouble() - 0.5) * width, MIN_LNG, MAX_LNG);
+        centerLat = clamp(centerLat + (random.nextDouble() - 0.5) * height, MIN_LAT, MAX_LAT);
+    }
+
+    private List<PlannedRequest> viewportRequests() {
+        String bbox = bboxQuery(viewport());
+        List<PlannedRequest> requests = new ArrayList<>(2);
+        requests.add(new PlannedRequest(Endpoint.BUILDING_POLYGONS, Endpoint.BUILDING_POLYGONS.path() + "?" + bbox));
+        requests.add(new PlannedRequest(Endpoint.ZONAGE_GEOJSON, Endpoint.ZONAGE_GEOJSON.path() + "?" + bbox));
+        return requests;
+    }
+
+    private List<PlannedRequest> click() {
+        double[] bbox = viewport();
+        double lng = bbox[0] + random.nextDouble() * (bbox[2] - bbox[0]);
+        double lat = bbox[1] + random.nextDouble() * (bbox[3] - bbox[1]);
+        String point = String.format(Locale.ROOT, "lng=%.6f&lat=%.6f", lng, lat);
+        return List.of(
+                new PlannedRequest(Endpoint.ZONAGE_AT_POINT, Endpoint.ZONAGE_AT_POINT.path() + "?" + point),
+                new PlannedRequest(Endpoint.ZONAGE_TAB_AT_POINT, Endpoint.ZONAGE_TAB_AT_POINT.path() + "?" + point)
+        );
+    }
+
+    private double[] viewport() {
+        double degreesPerPixel = 360.0 / (256.0 * Math.pow(2, zoom));
+        double halfWidth = VIEWPORT_WIDTH_PX * degreesPerPixel / 2;
+        double halfHeight = VIEWPORT_HEIGHT_PX * degreesPerPixel * Math.cos(Math.toRadians(centerLat)) / 2;
+        return new double[]{
+                centerLng - halfWidth, centerLat - halfHeight,
+                centerLng + halfWidth, centerLat + halfHeight
+        };
+    }
+
+    private static String bboxQuery(double[] bbox) {
+        return String.format(Locale.ROOT, "minLng=%.6f&minLat=%.6f&maxLng=%.6f&maxLat=%.6f",
+                bbox[0], bbox[1], bbox[2], bbox[3]);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,130 @@
+package com.teksi.montrealmap.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays simulated map sessions against the full stack (Tomcat, controllers,
+ * Hikari, PostGIS) at a fixed request rate and checks latency SLOs.
+ * <p>
+ * Needs the PostGIS container from {@code docker-compose.yml} with data loaded
+ * ({@code scripts/populate-db.sh}), then: {@code ./mvnw -Ploadtest verify}.
+ * <p>
+ * The load is open-loop: requests are scheduled at a fixed rate regardless of
+ * how fast responses come back, and latency is measured from the scheduled
+ * start, so a slow server shows up as latency rather than as a lower request
+ * rate (no coordinated omission).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class MapSessionLoadIT {
+
+    private static final Path REPORT_DIR = Path.of("target", "loadtest", "histograms");
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void mapSessionsMeetLatencySlos() throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+
+        Random random = new Random(settings.seed());
+        List<MapSession> sessions = new ArrayList<>(settings.sessions());
+        for (int i = 0; i < settings.sessions(); i++) {
+            sessions.add(new MapSession(random));
+        }
+
+        ExecutorService httpExecutor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(httpExecutor)
+                .build();
+
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        Deque<MapSession.PlannedRequest> pending = new ArrayDeque<>();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rps();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        int nextSession = 0;
+
+        for (long i = 0; ; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            if (scheduledAt >= end) break;
+            parkUntil(scheduledAt);
+
+            if (pending.isEmpty()) {
+                pending.addAll(sessions.get(nextSession++ % sessions.size()).nextStep());
+            }
+            MapSession.PlannedRequest planned = pending.poll();
+            boolean measured = scheduledAt >= measureFrom;
+
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + planned.pathAndQuery()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+
+            inFlight.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (!measured) return;
+                        boolean success = error == null && planned.endpoint().isSuccess(response.statusCode());
+                        stats.get(planned.endpoint()).record(System.nanoTime() - scheduledAt, success);
+                    }));
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(error -> null)
+                .get(1, TimeUnit.MINUTES);
+        httpExecutor.shutdownNow();
+
+        double measuredSeconds = settings.duration().toMillis() / 1000.0;
+        List<String> violations = new ArrayList<>();
+
+        System.out.printf("%nLoad test: %d req/s target, %d sessions, %.0f s measured after %d s warmup%n",
+                settings.rps(), settings.sessions(), measuredSeconds, settings.warmup().toSeconds());
+        System.out.println(EndpointStats.summaryHeader());
+        for (EndpointStats endpointStats : stats.values()) {
+            System.out.println(endpointStats.summaryLine(measuredSeconds));
+            endpointStats.writeHistogram(REPORT_DIR);
+            violations.addAll(endpointStats.sloViolations(settings.maxErrorRate()));
+        }
+        System.out.println("HDR percentile distributions written to " + REPORT_DIR.toAbsolutePath());
+
+        assertThat(violations).as("SLO violations").isEmpty();
+    }
+
+    private static void parkUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.teksi.montrealmap.progressive;
+
+import com.teksi.montrealmap.cache.CompressionProperties;
+import com.teksi.montrealmap.cache.ResponseCompressor;
+import com.teksi.montrealmap.geojson.GeoJson;
+import com.teksi.montrealmap.load.Cancellation;
+import com.teksi.montrealmap.load.CancelledException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProgressiveGeoJsonWriterTest {
+
+    private static final Envelope BBOX = new Envelope(-73.6, -73.5, 45.4, 45.6);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProgressiveGeoJsonWriter writer = new ProgressiveGeoJsonWriter(JsonMapper.builder().build(),
+            new ResponseCompressor(new CompressionProperties(true, DataSize.ofKilobytes(1), 6), meterRegistry),
+            meterRegistry);
+
+    @Test
+    void completeStreamEndsWithTheCompleteLine() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(body(() -> List.of()), "gzip", response);
+
+        List<String> lines = new String(gunzip(response.getContentAsByteArray())).lines().toList();
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(3)).contains("\"phase\":\"complete\"");
+        assertThat(count("complete")).isEqualTo(1);
+    }
+
+    @Test
+    void failureAfterTheFirstLineLeavesTheStreamUnterminated() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThatThrownBy(() -> writer.write(body(() -> {
+            throw new IllegalStateException("conversion failed");
+        }), "gzip", response)).isInstanceOf(IllegalStateException.class);
+
+        // the lines already flushed, but not the compressor's trailer
+        assertThatThrownBy(() -> gunzip(response.getContentAsByteArray()))
+                .isInstanceOf(EOFException.class);
+        assertThat(response.getContentAsByteArray()).isNotEmpty();
+        assertThat(count("error")).isEqualTo(1);
+        assertThat(count("complete")).isZero();
+    }
+
+    @Test
+    void cancellationAfterTheFirstLineLeavesTheStreamUnterminated() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Cancellation request = Cancellation.withoutDeadline();
+
+        try (Cancellation.Registration ignored = request.bind()) {
+            assertThatThrownBy(() -> writer.write(body(() -> {
+                request.cancel(Cancellation.Reason.DEADLINE);
+                return List.of();
+            }), "gzip", response)).isInstanceOfSatisfying(CancelledException.class,
+                    e -> assertThat(e.stage()).isEqualTo("serialization"));
+        }
+
+        assertThat(response.isCommitted()).isTrue();
+        assertThatThrownBy(() -> gunzip(response.getContentAsByteArray()))
+                .isInstanceOf(EOFException.class);
+        assertThat(count("deadline")).isEqualTo(1);
+        assertThat(count("complete")).isZero();
+    }
+
+    private static ProgressiveGeoJson body(Supplier<List<GeoJson.Feature>> second) {
+        return new ProgressiveGeoJson(BBOX, List.of(), List.of(
+                new ProgressiveGeoJson.Chunk(BBOX, List::of),
+                new ProgressiveGeoJson.Chunk(BBOX, second)));
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        return new GZIPInputStream(new ByteArrayInputStream(gzip)).readAllBytes();
+    }
+
+    private double count(String outcome) {
+        Counter counter = meterRegistry.find("montreal.progressive.responses").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
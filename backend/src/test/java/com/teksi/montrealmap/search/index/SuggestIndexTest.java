@@ -0,0 +1,85 @@
+package com.teksi.montrealmap.search.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestIndexTest {
+
+    @Test
+    void foldStripsAccentsCaseAndPunctuation() {
+        assertThat(SuggestIndex.fold("Rue Sainte-Catherine, Montréal")).isEqualTo("rue sainte catherine montreal");
+        assertThat(SuggestIndex.fold("  ÉCOLE  ")).isEqualTo("ecole");
+        assertThat(SuggestIndex.fold(null)).isEmpty();
+    }
+
+    @Test
+    void foldSpellsOutLigatures() {
+        assertThat(SuggestIndex.fold("Île-des-Sœurs")).isEqualTo("ile des soeurs");
+        assertThat(SuggestIndex.fold("Sacré-CŒUR")).isEqualTo("sacre coeur");
+        assertThat(SuggestIndex.fold("Æsop Straße")).isEqualTo("aesop strasse");
+    }
+
+    @Test
+    void findsFrenchNamesWithoutAccentsOrLigatures() {
+        SuggestIndex index = new SuggestIndex.Builder()
+                .add(entry("1", "Île-des-Sœurs"), "Île-des-Sœurs")
+                .add(entry("2", "Rue du Sacré-Cœur"), "Rue du Sacré-Cœur")
+                .add(entry("3", "Rue Sainte-Catherine"), "Rue Sainte-Catherine")
+                .build();
+
+        assertThat(ids(index.search("ile des soeurs", 10))).containsExactly("1");
+        assertThat(ids(index.search("sœurs", 10))).containsExactly("1");
+        assertThat(ids(index.search("coeur", 10))).containsExactly("2");
+        assertThat(ids(index.search("sacre-coeur", 10))).containsExactly("2");
+        assertThat(ids(index.search("ste cath", 10))).isEmpty();
+        assertThat(ids(index.search("sainte cath", 10))).containsExactly("3");
+    }
+
+    @Test
+    void findsZoneCodesWithOrWithoutSeparators() {
+        SuggestIndex index = new SuggestIndex.Builder()
+                .add(entry("z1", "C.02-123"), "C.02-123")
+                .add(entry("z2", "C.02-456"), "C.02-456")
+                .build();
+
+        assertThat(ids(index.search("c02123", 10))).containsExactly("z1");
+        assertThat(ids(index.search("C.02-1", 10))).containsExactly("z1");
+        assertThat(ids(index.search("c02", 10))).containsExactlyInAnyOrder("z1", "z2");
+    }
+
+    @Test
+    void ranksExactThenPrefixThenWordMatches() {
+        SuggestIndex index = new SuggestIndex.Builder()
+                .add(entry("word", "Rue Saint-Denis"), "Rue Saint-Denis")
+                .add(entry("prefix", "Saint-Laurent"), "Saint-Laurent")
+                .add(entry("exact", "Saint"), "Saint")
+                .build();
+
+        assertThat(ids(index.search("saint", 10))).containsExactly("exact", "prefix", "word");
+        assertThat(ids(index.search("saint", 2))).containsExactly("exact", "prefix");
+    }
+
+    @Test
+    void prefixMatchesOutrankWordMatchesOfACommonWord() {
+        SuggestIndex.Builder builder = new SuggestIndex.Builder();
+        for (int i = 0; i < 2_000; i++) {
+            builder.add(entry("rue" + i, "Rue Saint-Denis " + i), "Rue Saint-Denis " + i);
+        }
+        builder.add(entry("prefix", "Saint-Zotique"), "Saint-Zotique");
+        SuggestIndex index = builder.build();
+
+        assertThat(ids(index.search("saint", 3))).containsExactly("prefix", "rue0", "rue1");
+        assertThat(ids(index.search("saint zot", 3))).containsExactly("prefix");
+    }
+
+    static SuggestIndex.Entry entry(String id, String label) {
+        return new SuggestIndex.Entry("street", id, label, -73.6, 45.5, -73.5, 45.6);
+    }
+
+    static List<String> ids(List<SuggestIndex.Entry> entries) {
+        return entries.stream().map(SuggestIndex.Entry::id).toList();
+    }
+}
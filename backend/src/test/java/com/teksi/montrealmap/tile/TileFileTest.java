@@ -0,0 +1,52 @@
+package com.teksi.montrealmap.tile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileFileTest {
+
+    private static final int TILE_SIZE = 1024 * 1024 + 7;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTilesInMappedSegmentsAcrossBoundariesAndInTheTail() throws IOException {
+        Path path = directory.resolve("buildings.tiles");
+        // past one segment: most tiles end up mapped, one straddles the boundary and the last are in the tail
+        int count = (int) (TileFile.SEGMENT_SIZE / TILE_SIZE) + 4;
+
+        try (TileFile file = TileFile.open(path)) {
+            for (int i = 0; i < count; i++) {
+                file.write(i, tile(i));
+                // reads interleaved with writes, as when tiles are rendered on demand
+                assertTile(file, i);
+            }
+            for (int i = 0; i < count; i++) {
+                assertTile(file, i);
+            }
+        }
+
+        try (TileFile reopened = TileFile.open(path)) {
+            for (int i = 0; i < count; i++) {
+                assertTile(reopened, i);
+            }
+        }
+    }
+
+    private static void assertTile(TileFile file, int i) throws IOException {
+        assertThat(file.read(i)).hasValueSatisfying(data -> assertThat(data).isEqualTo(tile(i)));
+    }
+
+    private static byte[] tile(int i) {
+        byte[] data = new byte[TILE_SIZE];
+        Arrays.fill(data, (byte) i);
+        return data;
+    }
+}
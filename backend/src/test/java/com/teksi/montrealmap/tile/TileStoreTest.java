@@ -0,0 +1,95 @@
+package com.teksi.montrealmap.tile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileStoreTest {
+
+    private static final TileKey KEY = new TileKey(16, 19400, 23450);
+    private static final byte[] TILE = "{}".getBytes();
+
+    @TempDir
+    Path directory;
+
+    private TileStore store;
+
+    @BeforeEach
+    void open() throws IOException {
+        store = new TileStore(new TileProperties(true, directory, 10, 16, 15, 13, false, 13, 14,
+                new TileProperties.Extent(-73.98, 45.40, -73.47, 45.71)));
+        store.open();
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    @Test
+    void storesATileRenderedWithinTheCurrentGeneration() {
+        store.put(TileLayer.BUILDINGS, KEY, TILE, store.generation(TileLayer.BUILDINGS));
+
+        assertThat(store.get(TileLayer.BUILDINGS, KEY)).hasValue(TILE);
+    }
+
+    @Test
+    void dropsATileRenderedBeforeAnInvalidation() {
+        long generation = store.generation(TileLayer.BUILDINGS);
+        store.invalidate(TileLayer.BUILDINGS, KEY.bounds());
+        store.put(TileLayer.BUILDINGS, KEY, TILE, generation);
+
+        assertThat(store.contains(TileLayer.BUILDINGS, KEY)).isFalse();
+    }
+
+    @Test
+    void invalidatingOneLayerKeepsTheOthersTiles() {
+        long generation = store.generation(TileLayer.ZONAGE);
+        store.invalidate(TileLayer.BUILDINGS, null);
+        store.put(TileLayer.ZONAGE, KEY, TILE, generation);
+
+        assertThat(store.contains(TileLayer.ZONAGE, KEY)).isTrue();
+    }
+
+    @Test
+    void concurrentFlushesCompactAFileOnce() throws Exception {
+        byte[] large = new byte[1024 * 1024];
+        long generation = store.generation(TileLayer.BUILDINGS);
+        for (int i = 0; i < 40; i++) {
+            large[0] = (byte) i;
+            store.put(TileLayer.BUILDINGS, KEY, large, generation);
+        }
+
+        int threads = 4;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<?> flush : IntStream.range(0, threads).mapToObj(i -> executor.submit(() -> {
+                start.await();
+                store.flush();
+                return null;
+            })).toList()) {
+                flush.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(store.stats(TileLayer.BUILDINGS)).containsEntry("deadBytes", 0L);
+        assertThat(store.get(TileLayer.BUILDINGS, KEY)).hasValueSatisfying(tile -> assertThat(tile[0]).isEqualTo((byte) 39));
+        // the file in use is open: a tile stored now can be read back
+        store.put(TileLayer.BUILDINGS, new TileKey(16, 19401, 23450), TILE, generation);
+        assertThat(store.get(TileLayer.BUILDINGS, new TileKey(16, 19401, 23450))).hasValue(TILE);
+    }
+}
@@ -19,20 +19,26 @@ if ! docker ps --format '{{.Names}}' | grep -q "^${CONTAINER}$"; then
     exit 1
 fi
 
-echo "[1/4] Loading raw zoning data..."
+echo "[1/5] Loading raw zoning data..."
 docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -f /db/raw/raw_zonage.sql" > /dev/null
 echo "      Done - 746 raw zonage records loaded"
 
-echo "[2/4] Transforming zoning data..."
+echo "[2/5] Transforming zoning data..."
 docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -f /db/populate/populate_zonage.sql" > /dev/null
 echo "      Done - zonage table populated"
 
-echo "[3/4] Loading building data..."
+echo "[3/5] Loading building data..."
 docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -f /db/populate/populate_buildings.sql" > /dev/null
 echo "      Done - sample buildings loaded"
 
-echo "[4/4] Loading raw zonage tab (optional)..."
+echo "[4/5] Loading raw zonage tab (optional)..."
 docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -f /db/raw/raw_zonage_tab.sql" 2>/dev/null || true
+# the load recreates the table: re-attach the triggers that notify the API of data changes
+docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -c \"SELECT track_data_version('raw.raw_zonage_tab', 'zonage-tab', 'wkb_geometry');\"" > /dev/null 2>&1 || true
+echo "      Done"
+
+echo "[5/5] Ordering buildings and zonage spatially..."
+docker exec "$CONTAINER" sh -c "psql -U $DB_USER -d $DB_NAME -c \"SELECT recluster_by_sort_key('public.buildings'), recluster_by_sort_key('public.zonage');\"" > /dev/null
 echo "      Done"
 
 echo ""
@@ -0,0 +1,41 @@
+#!/bin/bash
+
+# Montreal Map API - Spatial Layout Benchmark
+# Measures the buffers a bbox query touches on buildings and zonage with the
+# rows in random (insertion-like) order, then again after ordering the tables
+# by their Hilbert sort key (recluster_by_sort_key, see V3__spatial_layout.sql).
+#
+# Rewrites both tables: run it against a development database only.
+# PostGIS must be running (docker-compose up -d postgis) and populated.
+#
+# Usage: scripts/spatial-layout-benchmark.sh [--no-shuffle]
+#   --no-shuffle  measure the current layout instead of a shuffled one first
+
+set -e
+
+CONTAINER="montreal-postgis"
+DB_USER="montreal"
+DB_NAME="montreal"
+
+if ! docker ps --format '{{.Names}}' | grep -q "^${CONTAINER}$"; then
+    echo "Error: Container '${CONTAINER}' is not running."
+    echo "Start it with: docker-compose up -d"
+    exit 1
+fi
+
+psql_exec() {
+    docker exec "$CONTAINER" psql -U "$DB_USER" -d "$DB_NAME" -v ON_ERROR_STOP=1 "$@"
+}
+
+echo "=== Montreal Map API - Buffers per bbox query (200 viewports, ~zoom 15) ==="
+echo ""
+
+if [ "$1" != "--no-shuffle" ]; then
+    echo "Shuffling buildings and zonage..."
+    psql_exec -q -f /db/benchmark/shuffle.sql > /dev/null
+fi
+psql_exec -q -v label=before -f /db/benchmark/spatial_layout.sql
+
+echo "Ordering by sort key..."
+psql_exec -q -c "SELECT recluster_by_sort_key('public.buildings'), recluster_by_sort_key('public.zonage');" > /dev/null
+psql_exec -q -v label=after -f /db/benchmark/spatial_layout.sql
@@ -0,0 +1,96 @@
+#!/bin/bash
+
+# Montreal Map API - Startup Benchmark
+# Measures time from JVM launch to the first successful API request
+# (HTTP 200 from a database-backed endpoint), for the plain jar and for the
+# fast-startup build (Spring AOT + AppCDS, optionally with a deferred database).
+#
+# Build both first:
+#   cd backend && ./mvnw -DskipTests package && ./mvnw -Pfast-startup -DskipTests package
+# PostGIS must be running (docker-compose up -d postgis) and populated.
+#
+# Usage: scripts/startup-benchmark.sh [runs]
+
+set -e
+
+RUNS="${1:-5}"
+PORT="${PORT:-8090}"
+DB_URL="${DB_URL:-jdbc:postgresql://localhost:5433/montreal}"
+REQUEST_PATH="${REQUEST_PATH:-/api/buildings/search?minLng=-73.58&minLat=45.49&maxLng=-73.55&maxLat=45.51}"
+TIMEOUT_SECONDS="${TIMEOUT_SECONDS:-120}"
+
+BACKEND_DIR="$(cd "$(dirname "$0")/../backend" && pwd)"
+JAR="$(ls "$BACKEND_DIR"/target/montreal-map-api-*.jar 2>/dev/null | grep -v '\.original$' | head -1)"
+FAST_DIR="$BACKEND_DIR/target/fast-startup"
+FAST_JAR="$FAST_DIR/$(basename "$JAR")"
+
+if [ ! -f "$JAR" ] || [ ! -f "$FAST_JAR" ] || [ ! -f "$FAST_DIR/application.jsa" ]; then
+    echo "Error: build the jar and the fast-startup profile first (see header of this script)."
+    exit 1
+fi
+
+now_ms() {
+    date +%s%3N
+}
+
+# run_once <working dir> <java args...>
+# prints milliseconds until the first 200, or fails after TIMEOUT_SECONDS
+run_once() {
+    local dir="$1"
+    shift
+
+    local start
+    start=$(now_ms)
+    (cd "$dir" && exec java "$@" \
+        --server.port="$PORT" \
+        --spring.datasource.url="$DB_URL" > /tmp/startup-benchmark.log 2>&1) &
+    local pid=$!
+
+    local deadline=$((start + TIMEOUT_SECONDS * 1000))
+    local elapsed=""
+    while [ "$(now_ms)" -lt "$deadline" ]; do
+        if [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT$REQUEST_PATH")" = "200" ]; then
+            elapsed=$(($(now_ms) - start))
+            break
+        fi
+        sleep 0.02
+    done
+
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+
+    if [ -z "$elapsed" ]; then
+        echo "Error: no successful request within ${TIMEOUT_SECONDS}s, see /tmp/startup-benchmark.log" >&2
+        exit 1
+    fi
+    echo "$elapsed"
+}
+
+# bench <label> <working dir> <java args...>
+bench() {
+    local label="$1"
+    shift
+
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        times+=("$(run_once "$@")")
+    done
+
+    local sorted
+    sorted=$(printf '%s\n' "${times[@]}" | sort -n)
+    printf "%-32s min %6s ms   median %6s ms   max %6s ms\n" "$label" \
+        "$(echo "$sorted" | head -1)" \
+        "$(echo "$sorted" | sed -n "$(((RUNS + 1) / 2))p")" \
+        "$(echo "$sorted" | tail -1)"
+}
+
+echo "=== Montreal Map API - Time to first successful request ($RUNS runs each) ==="
+echo "Request: GET $REQUEST_PATH"
+echo ""
+
+bench "plain jar" "$BACKEND_DIR" -jar "$JAR"
+bench "AOT + AppCDS" "$FAST_DIR" \
+    -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$(basename "$FAST_JAR")"
+bench "AOT + AppCDS + deferred DB" "$FAST_DIR" \
+    -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dmontreal.startup.defer-database=true \
+    -jar "$(basename "$FAST_JAR")"